@@ -0,0 +1,152 @@
+package com.github.smatyukevich.app;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+/**
+ * Signed, short-lived tokens for the stateless profile. After a Basic login at POST /token the client
+ * sends "Authorization: Bearer &lt;token&gt;" instead; the token carries the user name, roles, expiry
+ * and a random id, and is checked against its HMAC-SHA256 signature without any session or Redis
+ * lookup. Name and roles are base64url encoded in it, so they may contain any character. Logout puts
+ * the token id on a revocation list that only keeps ids until their token expires.
+ * <p>
+ * Instances accept each other's tokens only if they share auth.token.secret. Revocations are kept per
+ * instance, so a logged out token stays usable on the other instances for at most
+ * auth.token.ttl-seconds.
+ */
+@Component
+@Profile("stateless")
+public class AuthTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthTokenService.class);
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final HmacSha256 hmac;
+
+    private final long ttlSeconds;
+
+    private final Clock clock;
+
+    /**
+     * Ids of logged out tokens, with the second their token expires.
+     */
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AuthTokenService(@Value("${auth.token.secret:}") String secret,
+                            @Value("${auth.token.ttl-seconds:300}") long ttlSeconds) {
+        this(secret, ttlSeconds, Clock.systemUTC());
+    }
+
+    AuthTokenService(String secret, long ttlSeconds, Clock clock) {
+        if (secret.isEmpty()) {
+            logger.warn("auth.token.secret is not set, tokens are only valid on this instance until it restarts");
+            this.hmac = HmacSha256.withRandomKey();
+        } else {
+            this.hmac = new HmacSha256(secret.getBytes(StandardCharsets.UTF_8));
+        }
+        this.ttlSeconds = ttlSeconds;
+        this.clock = clock;
+    }
+
+    public String issue(Authentication authentication) {
+        String roles = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.joining(","));
+        long expires = now() + ttlSeconds;
+        String id = UUID.randomUUID().toString().replace("-", "");
+        byte[] payload = (encode(authentication.getName()) + ":" + encode(roles) + ":" + expires + ":" + id)
+                .getBytes(StandardCharsets.UTF_8);
+        return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(hmac.sign(payload));
+    }
+
+    /**
+     * Returns the authentication the token stands for, or null if it is malformed, forged, expired
+     * or revoked.
+     */
+    public Authentication verify(String token) {
+        String[] claims = claims(token);
+        if (claims == null || revoked.containsKey(claims[3])) {
+            return null;
+        }
+        return new PreAuthenticatedAuthenticationToken(claims[0], token,
+                AuthorityUtils.commaSeparatedStringToAuthorityList(claims[1]));
+    }
+
+    /**
+     * Revokes a valid token until it expires. Expired ids are dropped from the list on the way.
+     */
+    public void revoke(String token) {
+        String[] claims = claims(token);
+        if (claims == null) {
+            return;
+        }
+        long now = now();
+        revoked.values().removeIf(expires -> expires <= now);
+        revoked.put(claims[3], Long.parseLong(claims[2]));
+    }
+
+    int revokedCount() {
+        return revoked.size();
+    }
+
+    /**
+     * The user, roles, expiry and id of a valid, unexpired token, null otherwise.
+     */
+    private String[] claims(String token) {
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(token.substring(0, dot));
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(hmac.sign(payload), signature)) {
+            return null;
+        }
+        String[] claims = new String(payload, StandardCharsets.UTF_8).split(":", -1);
+        if (claims.length != 4 || Long.parseLong(claims[2]) <= now()) {
+            return null;
+        }
+        claims[0] = decode(claims[0]);
+        claims[1] = decode(claims[1]);
+        return claims;
+    }
+
+    private static String encode(String claim) {
+        return ENCODER.encodeToString(claim.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String claim) {
+        return new String(DECODER.decode(claim), StandardCharsets.UTF_8);
+    }
+
+    private long now() {
+        return clock.millis() / 1000;
+    }
+}
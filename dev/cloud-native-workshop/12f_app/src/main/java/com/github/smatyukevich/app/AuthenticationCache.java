@@ -0,0 +1,92 @@
+package com.github.smatyukevich.app;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Successful password logins for a short while, so a client sending HTTP Basic credentials with every
+ * request pays for the password hash and the user lookup once per auth.cache.ttl-seconds instead of on
+ * each request. Entries are keyed on an HMAC-SHA256 of user name and password under a key that never
+ * leaves this instance, so the cache holds neither the passwords nor a digest that could be brute
+ * forced offline. A wrong password misses the cache and goes to the user store as before.
+ * <p>
+ * Entries of a user are dropped when the user logs out or their password changes; a locked or disabled
+ * account is noticed once its entries expire. Setting auth.cache.enabled=false turns the cache off.
+ */
+@Component
+public class AuthenticationCache implements PublicMetrics {
+
+    private final boolean enabled;
+
+    private final Cache<String, Authentication> cache;
+
+    private final HmacSha256 hmac = HmacSha256.withRandomKey();
+
+    @Autowired
+    public AuthenticationCache(@Value("${auth.cache.enabled:true}") boolean enabled,
+                               @Value("${auth.cache.maximum-size:1000}") long maximumSize,
+                               @Value("${auth.cache.ttl-seconds:30}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the authentication of an earlier login with the same user name and password, or null.
+     */
+    public Authentication get(String username, String password) {
+        if (!enabled) {
+            return null;
+        }
+        return cache.getIfPresent(digest(username, password));
+    }
+
+    /**
+     * Remembers a successful login. The authentication should not carry the password.
+     */
+    public void put(String username, String password, Authentication authentication) {
+        if (enabled) {
+            cache.put(digest(username, password), authentication);
+        }
+    }
+
+    /**
+     * Drops all entries of the user, whichever password they were made with.
+     */
+    public void invalidate(String username) {
+        cache.asMap().values().removeIf(authentication -> authentication.getName().equals(username));
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        CacheStats stats = cache.stats();
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("auth.cache.size", cache.estimatedSize()),
+                new Metric<>("auth.cache.hits", stats.hitCount()),
+                new Metric<>("auth.cache.misses", stats.missCount()),
+                new Metric<>("auth.cache.evictions", stats.evictionCount()));
+    }
+
+    private String digest(String username, String password) {
+        // the NUL separator keeps ("ab", "c") and ("a", "bc") apart
+        byte[] credentials = (username + '\0' + password).getBytes(StandardCharsets.UTF_8);
+        return Base64.getEncoder().encodeToString(hmac.sign(credentials));
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.smatyukevich.app;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.provisioning.UserDetailsManager;
+
+/**
+ * A user store that drops a user's {@link AuthenticationCache} entries whenever the user's password or
+ * account changes, so the old password stops working right away. Wraps the in-memory users today and a
+ * JdbcUserDetailsManager just as well.
+ */
+public class CacheInvalidatingUserDetailsManager implements UserDetailsManager {
+
+    private final UserDetailsManager delegate;
+
+    private final AuthenticationCache cache;
+
+    public CacheInvalidatingUserDetailsManager(UserDetailsManager delegate, AuthenticationCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String username) {
+        return delegate.loadUserByUsername(username);
+    }
+
+    @Override
+    public boolean userExists(String username) {
+        return delegate.userExists(username);
+    }
+
+    @Override
+    public void createUser(UserDetails user) {
+        delegate.createUser(user);
+    }
+
+    @Override
+    public void updateUser(UserDetails user) {
+        delegate.updateUser(user);
+        cache.invalidate(user.getUsername());
+    }
+
+    @Override
+    public void deleteUser(String username) {
+        delegate.deleteUser(username);
+        cache.invalidate(username);
+    }
+
+    /**
+     * Changes the password of the current user, see {@link UserDetailsManager#changePassword}.
+     */
+    @Override
+    public void changePassword(String oldPassword, String newPassword) {
+        delegate.changePassword(oldPassword, newPassword);
+        Authentication current = SecurityContextHolder.getContext().getAuthentication();
+        if (current != null) {
+            cache.invalidate(current.getName());
+        }
+    }
+}
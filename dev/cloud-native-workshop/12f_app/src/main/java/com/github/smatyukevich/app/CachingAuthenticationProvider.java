@@ -0,0 +1,52 @@
+package com.github.smatyukevich.app;
+
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+/**
+ * Answers password logins from the {@link AuthenticationCache} and hands misses to the provider that
+ * checks the password against the user store.
+ */
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+
+    private final AuthenticationProvider delegate;
+
+    private final AuthenticationCache cache;
+
+    public CachingAuthenticationProvider(AuthenticationProvider delegate, AuthenticationCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) {
+        String username = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        if (credentials == null) {
+            return delegate.authenticate(authentication);
+        }
+        String password = credentials.toString();
+
+        Authentication cached = cache.get(username, password);
+        if (cached == null) {
+            Authentication result = delegate.authenticate(authentication);
+            if (result == null) {
+                return null;
+            }
+            // cache a copy without the password, the details belong to this request only
+            cached = new UsernamePasswordAuthenticationToken(result.getPrincipal(), null, result.getAuthorities());
+            cache.put(username, password, cached);
+            return result;
+        }
+        UsernamePasswordAuthenticationToken result =
+                new UsernamePasswordAuthenticationToken(cached.getPrincipal(), null, cached.getAuthorities());
+        result.setDetails(authentication.getDetails());
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+}
@@ -0,0 +1,191 @@
+package com.github.smatyukevich.app;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cloud.config.client.ConfigClientProperties;
+import org.springframework.cloud.context.refresh.ContextRefresher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the config server's /changes event stream open and refreshes the environment, as a POST to
+ * /refresh would, when the server reports a new version of the app's environment. The stream is
+ * asked for the application, profile and label the app fetched at startup, and the version it got
+ * then, config.client.version, is the one to compare with, so a change made before the stream was
+ * first opened still refreshes. Without it (e.g. the native backend has no versions) the first
+ * version the server reports is taken as current. Refreshes are delayed by up to
+ * config.push.max-delay-ms at random, so a fleet doesn't hit the config server all at once. The
+ * stream is reopened with backoff when it breaks.
+ * <p>
+ * Off with config.push.enabled=false or without a config server.
+ */
+@Component
+@ConditionalOnProperty(name = {"spring.cloud.config.enabled", "config.push.enabled"}, havingValue = "true", matchIfMissing = true)
+public class ConfigChangeSubscriber implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigChangeSubscriber.class);
+
+    private static final String CHANGE_EVENT = "change";
+
+    /**
+     * The server sends a keep-alive every 30 seconds.
+     */
+    private static final int READ_TIMEOUT_MILLIS = 90000;
+
+    private static final long MAX_BACKOFF_MILLIS = 60000;
+
+    private final String changesUrl;
+
+    private final long maxDelayMillis;
+
+    private final Runnable refresh;
+
+    private final Thread listener = new Thread(this::listen, "config-changes");
+
+    private volatile boolean running = true;
+
+    /**
+     * The version the app has, only used by the listener thread after it starts.
+     */
+    private String version;
+
+    @Autowired
+    public ConfigChangeSubscriber(@Value("${spring.cloud.config.uri:http://localhost:8888}") String configServerUri,
+                                  @Value("${config.client.version:#{null}}") String startVersion,
+                                  @Value("${config.push.max-delay-ms:2000}") long maxDelayMillis,
+                                  ConfigClientProperties configClientProperties,
+                                  Environment environment,
+                                  ContextRefresher contextRefresher) {
+        this(changesUrl(configServerUri, configClientProperties.override(environment)), startVersion, maxDelayMillis, () -> {
+            Set<String> keys = contextRefresher.refresh();
+            logger.info("Refreshed the environment after a config change, changed keys: {}", keys);
+        });
+    }
+
+    ConfigChangeSubscriber(String changesUrl, String startVersion, long maxDelayMillis, Runnable refresh) {
+        this.changesUrl = changesUrl;
+        this.version = startVersion;
+        this.maxDelayMillis = maxDelayMillis;
+        this.refresh = refresh;
+        this.listener.setDaemon(true);
+    }
+
+    /**
+     * The server's /changes stream for the environment the config client fetches.
+     */
+    static String changesUrl(String configServerUri, ConfigClientProperties client) {
+        StringBuilder url = new StringBuilder(configServerUri.replaceAll("/$", "")).append("/changes");
+        url.append("?application=").append(encode(client.getName()));
+        url.append("&profile=").append(encode(client.getProfile()));
+        if (client.getLabel() != null) {
+            url.append("&label=").append(encode(client.getLabel()));
+        }
+        return url.toString();
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        listener.start();
+    }
+
+    private void listen() {
+        long backoffMillis = 1000;
+        while (running) {
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(changesUrl).openConnection();
+                connection.setRequestProperty("Accept", "text/event-stream");
+                connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                    backoffMillis = 1000;
+                    read(reader);
+                }
+            } catch (IOException e) {
+                logger.warn("Config change stream at {} broke, reconnecting in {} ms: {}", changesUrl, backoffMillis, e.getMessage());
+            }
+            if (!sleep(backoffMillis)) {
+                return;
+            }
+            backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    /**
+     * Handles the events of the stream until it ends.
+     */
+    void read(BufferedReader reader) throws IOException {
+        String event = null;
+        StringBuilder data = new StringBuilder();
+        String line;
+        while (running && (line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (CHANGE_EVENT.equals(event)) {
+                    changed(data.toString());
+                }
+                event = null;
+                data.setLength(0);
+            } else if (line.startsWith("event:")) {
+                event = line.substring("event:".length()).trim();
+            } else if (line.startsWith("data:")) {
+                data.append(line.substring("data:".length()).trim());
+            }
+            // lines starting with ':' are the server's keep-alives
+        }
+    }
+
+    private void changed(String current) {
+        String previous = version;
+        version = current;
+        if (previous == null || previous.equals(current)) {
+            return;
+        }
+        if (maxDelayMillis <= 0 || sleep(ThreadLocalRandom.current().nextLong(maxDelayMillis))) {
+            refresh.run();
+        }
+    }
+
+    /**
+     * @return false if interrupted by shutdown
+     */
+    private static boolean sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        listener.interrupt();
+    }
+}
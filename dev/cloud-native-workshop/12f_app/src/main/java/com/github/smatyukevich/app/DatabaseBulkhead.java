@@ -0,0 +1,83 @@
+package com.github.smatyukevich.app;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limits the number of concurrent calls into the stock item repositories to the size of
+ * the connection pool. A call that cannot get a permit within stock.db.acquire-timeout-ms
+ * fails with {@link DatabaseOverloadedException} instead of queueing for a connection.
+ * The advice runs outside the transaction interceptor, so the permit is taken before a
+ * transaction opens a connection and released after it is returned.
+ * <p>
+ * The health contribution only reports the permits and never touches the database, so
+ * /health keeps answering while the database is saturated.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class DatabaseBulkhead implements HealthIndicator, PublicMetrics {
+
+    private final int maxConcurrency;
+
+    private final long acquireTimeoutMillis;
+
+    private final Semaphore permits;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    @Autowired
+    public DatabaseBulkhead(@Value("${stock.db.max-concurrency:${spring.datasource.tomcat.max-active:100}}") int maxConcurrency,
+                            @Value("${stock.db.acquire-timeout-ms:100}") long acquireTimeoutMillis) {
+        this.maxConcurrency = maxConcurrency;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    @Around("target(com.github.smatyukevich.app.StockItemRepository)"
+            + " || target(com.github.smatyukevich.app.StockItemJdbcRepository)")
+    public Object limit(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            rejected.incrementAndGet();
+            throw new DatabaseOverloadedException("No database permit within " + acquireTimeoutMillis + " ms");
+        }
+        try {
+            return joinPoint.proceed();
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public Health health() {
+        return Health.up()
+                .withDetail("maxConcurrency", maxConcurrency)
+                .withDetail("available", permits.availablePermits())
+                .withDetail("rejected", rejected.get())
+                .build();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("stock.db.in-use", maxConcurrency - permits.availablePermits()),
+                new Metric<>("stock.db.waiting", permits.getQueueLength()),
+                new Metric<>("stock.db.rejected", rejected.get()));
+    }
+}
@@ -0,0 +1,12 @@
+package com.github.smatyukevich.app;
+
+/**
+ * Thrown when a database call is refused because all permits of the
+ * {@link DatabaseBulkhead} are taken.
+ */
+public class DatabaseOverloadedException extends RuntimeException {
+
+    public DatabaseOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.smatyukevich.app;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * HMAC-SHA256 under one key. Mac instances are not thread-safe, so each thread gets its own.
+ */
+final class HmacSha256 {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    HmacSha256(byte[] key) {
+        this.key = new SecretKeySpec(key, ALGORITHM);
+        // fail at startup rather than on the first request
+        newMac();
+    }
+
+    /**
+     * A key that never leaves this instance and is gone when it restarts.
+     */
+    static HmacSha256 withRandomKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return new HmacSha256(key);
+    }
+
+    byte[] sign(byte[] data) {
+        return macs.get().doFinal(data);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not initialise " + ALGORITHM, e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.smatyukevich.app;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+/**
+ * The strategies discovery.load-balancer.strategy can name:
+ * <ul>
+ * <li>round-robin: each instance in turn;</li>
+ * <li>least-outstanding: the instance with the fewest requests in flight, ties broken at random;</li>
+ * <li>latency-weighted: a random instance, weighted by the inverse of its average latency times its
+ * requests in flight, so slow or busy instances get less. Instances without a finished request yet are
+ * treated like the fastest one.</li>
+ * </ul>
+ */
+public final class LoadBalancingStrategies {
+
+    private LoadBalancingStrategies() {
+    }
+
+    public static LoadBalancingStrategy named(String name) {
+        switch (name) {
+            case "round-robin":
+                return new RoundRobin();
+            case "least-outstanding":
+                return LoadBalancingStrategies::leastOutstanding;
+            case "latency-weighted":
+                return LoadBalancingStrategies::latencyWeighted;
+            default:
+                throw new IllegalArgumentException("Unknown load balancing strategy: " + name
+                        + ", use round-robin, least-outstanding or latency-weighted");
+        }
+    }
+
+    static class RoundRobin implements LoadBalancingStrategy {
+
+        private final AtomicInteger next = new AtomicInteger();
+
+        @Override
+        public ServiceInstance choose(List<ServiceInstance> instances, Function<ServiceInstance, ServiceInstanceStats> stats) {
+            return instances.get(Math.floorMod(next.getAndIncrement(), instances.size()));
+        }
+    }
+
+    static ServiceInstance leastOutstanding(List<ServiceInstance> instances,
+                                            Function<ServiceInstance, ServiceInstanceStats> stats) {
+        int size = instances.size();
+        int start = ThreadLocalRandom.current().nextInt(size);
+        ServiceInstance best = null;
+        int fewest = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            ServiceInstance instance = instances.get((start + i) % size);
+            int outstanding = stats.apply(instance).getOutstanding();
+            if (outstanding < fewest) {
+                best = instance;
+                fewest = outstanding;
+            }
+        }
+        return best;
+    }
+
+    static ServiceInstance latencyWeighted(List<ServiceInstance> instances,
+                                           Function<ServiceInstance, ServiceInstanceStats> stats) {
+        int size = instances.size();
+        double[] latencies = new double[size];
+        double fastest = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            ServiceInstanceStats instanceStats = stats.apply(instances.get(i));
+            latencies[i] = instanceStats.getAverageNanos() * (instanceStats.getOutstanding() + 1);
+            if (latencies[i] > 0 && latencies[i] < fastest) {
+                fastest = latencies[i];
+            }
+        }
+        double[] weights = new double[size];
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            weights[i] = latencies[i] > 0 ? 1 / latencies[i] : fastest == Double.MAX_VALUE ? 1 : 1 / fastest;
+            total += weights[i];
+        }
+        double pick = ThreadLocalRandom.current().nextDouble(total);
+        for (int i = 0; i < size - 1; i++) {
+            pick -= weights[i];
+            if (pick < 0) {
+                return instances.get(i);
+            }
+        }
+        return instances.get(size - 1);
+    }
+}
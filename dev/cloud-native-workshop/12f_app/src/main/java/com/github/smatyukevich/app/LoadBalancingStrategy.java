@@ -0,0 +1,18 @@
+package com.github.smatyukevich.app;
+
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+/**
+ * Picks one of an application's instances for the next request, see {@link LoadBalancingStrategies}.
+ */
+public interface LoadBalancingStrategy {
+
+    /**
+     * @param instances the application's instances, never empty
+     * @param stats     this instance's view of the requests sent to each of them
+     */
+    ServiceInstance choose(List<ServiceInstance> instances, Function<ServiceInstance, ServiceInstanceStats> stats);
+}
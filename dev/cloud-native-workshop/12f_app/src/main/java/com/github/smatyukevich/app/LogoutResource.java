@@ -1,18 +1,33 @@
 package com.github.smatyukevich.app;
 
+import java.security.Principal;
+
 import javax.servlet.http.HttpSession;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
+@Profile("!stateless")
 public class LogoutResource {
 
+    private final AuthenticationCache authenticationCache;
+
+    @Autowired
+    public LogoutResource(AuthenticationCache authenticationCache) {
+        this.authenticationCache = authenticationCache;
+    }
+
     @RequestMapping(value = "/logout", method = RequestMethod.GET)
-    public String logout(HttpSession session) {
+    public String logout(HttpSession session, Principal principal) {
 
         session.invalidate();
+        if (principal != null) {
+            authenticationCache.invalidate(principal.getName());
+        }
         return "Logout done!";
     }
 }
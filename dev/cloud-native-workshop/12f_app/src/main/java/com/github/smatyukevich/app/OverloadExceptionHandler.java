@@ -0,0 +1,29 @@
+package com.github.smatyukevich.app;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+/**
+ * Answers 503 with a Retry-After header when the request executor or the database
+ * bulkhead is full, so clients back off instead of piling up.
+ */
+@ControllerAdvice
+public class OverloadExceptionHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(OverloadExceptionHandler.class);
+
+    @ExceptionHandler({DatabaseOverloadedException.class, RejectedExecutionException.class})
+    public ResponseEntity<Void> overloaded(RuntimeException e) {
+        logger.warn("Rejecting request: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.smatyukevich.app;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.session.data.redis.config.annotation.web.http.EnableRedisHttpSession;
+
+/**
+ * HTTP sessions in Redis, the default. The stateless profile sets spring.session.store-type=none
+ * and authenticates with {@link AuthTokenService} tokens instead.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.session.store-type", havingValue = "redis", matchIfMissing = true)
+@EnableRedisHttpSession
+public class RedisSessionConfig {
+}
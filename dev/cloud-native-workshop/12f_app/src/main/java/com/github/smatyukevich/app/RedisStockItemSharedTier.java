@@ -0,0 +1,167 @@
+package com.github.smatyukevich.app;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.smatyukevich.app.domain.model.StockItem;
+
+/**
+ * Shared tier kept in the Redis instance the app already uses for HTTP sessions. Items are
+ * stored as JSON with a TTL and invalidations go out over pub/sub. Redis being unavailable
+ * only costs the shared tier: failures are logged and treated as misses.
+ * <p>
+ * Invalidations are handled on stock.cache.redis.listener-threads threads. When
+ * stock.cache.redis.listener-queue-capacity of them are waiting, the subscription thread
+ * handles the next one itself and stops reading until it is done.
+ */
+@Component
+@ConditionalOnProperty(name = "stock.cache.redis.enabled", havingValue = "true", matchIfMissing = true)
+public class RedisStockItemSharedTier implements StockItemSharedTier, InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisStockItemSharedTier.class);
+
+    private static final String KEY_PREFIX = "stock-item:";
+
+    private static final String INVALIDATION_CHANNEL = "stock-item-invalidations";
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final RedisMessageListenerContainer listenerContainer = new RedisMessageListenerContainer();
+
+    private final ThreadPoolTaskExecutor listenerExecutor = new ThreadPoolTaskExecutor();
+
+    private final long ttlSeconds;
+
+    @Autowired
+    public RedisStockItemSharedTier(RedisConnectionFactory connectionFactory, StringRedisTemplate redisTemplate,
+                                    ObjectMapper objectMapper,
+                                    @Value("${stock.cache.redis.ttl-seconds:300}") long ttlSeconds,
+                                    @Value("${stock.cache.redis.listener-threads:2}") int listenerThreads,
+                                    @Value("${stock.cache.redis.listener-queue-capacity:1000}") int listenerQueueCapacity) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.ttlSeconds = ttlSeconds;
+        listenerExecutor.setThreadNamePrefix("stock-invalidation-");
+        listenerExecutor.setCorePoolSize(listenerThreads);
+        listenerExecutor.setMaxPoolSize(listenerThreads);
+        listenerExecutor.setQueueCapacity(listenerQueueCapacity);
+        listenerExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        listenerContainer.setConnectionFactory(connectionFactory);
+        listenerContainer.setTaskExecutor(listenerExecutor);
+        // the subscription holds its thread for as long as the container runs
+        listenerContainer.setSubscriptionExecutor(new SimpleAsyncTaskExecutor("stock-invalidation-subscription-"));
+    }
+
+    @Override
+    public StockItem get(Long id) {
+        try {
+            String json = redisTemplate.opsForValue().get(KEY_PREFIX + id);
+            return json == null ? null : objectMapper.readValue(json, StockItem.class);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not read stock item(id={}) from redis: {}", id, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void store(StockItem item) {
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + item.getId(), objectMapper.writeValueAsString(item),
+                    ttlSeconds, TimeUnit.SECONDS);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not store stock item(id={}) in redis: {}", item.getId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void storeIfAbsent(StockItem item) {
+        try {
+            byte[] key = (KEY_PREFIX + item.getId()).getBytes(StandardCharsets.UTF_8);
+            byte[] value = objectMapper.writeValueAsBytes(item);
+            redisTemplate.execute((RedisCallback<Void>) connection -> {
+                connection.set(key, value, Expiration.seconds(ttlSeconds), SetOption.SET_IF_ABSENT);
+                return null;
+            });
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not store stock item(id={}) in redis: {}", item.getId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void remove(Long id) {
+        try {
+            redisTemplate.delete(KEY_PREFIX + id);
+        } catch (RuntimeException e) {
+            logger.warn("Could not remove stock item(id={}) from redis: {}", id, e.getMessage());
+        }
+    }
+
+    @Override
+    public void publishInvalidation(Long id) {
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, instanceId + ":" + id);
+        } catch (RuntimeException e) {
+            logger.warn("Could not publish invalidation of stock item(id={}): {}", id, e.getMessage());
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<Long> listener) {
+        listenerContainer.addMessageListener(invalidationListener(listener), new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    /**
+     * Passes the ids of invalidations published by the other instances on to the listener.
+     */
+    MessageListener invalidationListener(Consumer<Long> listener) {
+        return (message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            int separator = body.lastIndexOf(':');
+            if (separator < 0 || body.substring(0, separator).equals(instanceId)) {
+                return;
+            }
+            listener.accept(Long.valueOf(body.substring(separator + 1)));
+        };
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        listenerExecutor.afterPropertiesSet();
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        listenerContainer.destroy();
+        listenerExecutor.destroy();
+    }
+}
@@ -1,22 +1,62 @@
 package com.github.smatyukevich.app;
 
+import java.util.Arrays;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.security.provisioning.UserDetailsManager;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 import org.springframework.security.web.savedrequest.NullRequestCache;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
+    /**
+     * Only there with the stateless profile.
+     */
+    @Autowired(required = false)
+    private AuthTokenService tokens;
+
+    @Autowired
+    private AuthenticationCache authenticationCache;
+
+    @Bean
+    public PasswordEncoder passwordEncoder() {
+        return new BCryptPasswordEncoder();
+    }
+
+    /**
+     * The users, with BCrypt hashed passwords. Changes made through this manager invalidate the
+     * {@link AuthenticationCache}.
+     */
+    @Bean
+    public UserDetailsManager userDetailsManager() {
+        PasswordEncoder encoder = passwordEncoder();
+        InMemoryUserDetailsManager users = new InMemoryUserDetailsManager(Arrays.asList(
+                User.withUsername("admin").password(encoder.encode("admin_pass")).roles("ADMIN").build(),
+                User.withUsername("user").password(encoder.encode("user_pass")).roles("USER").build()));
+        return new CacheInvalidatingUserDetailsManager(users, authenticationCache);
+    }
+
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.inMemoryAuthentication()
-                .withUser("admin").password("admin_pass").roles("ADMIN")
-                .and()
-                .withUser("user").password("user_pass").roles("USER");
+        DaoAuthenticationProvider passwords = new DaoAuthenticationProvider();
+        passwords.setUserDetailsService(userDetailsManager());
+        passwords.setPasswordEncoder(passwordEncoder());
+        // HTTP Basic sends the password with every request, BCrypt is meant to be slow
+        auth.authenticationProvider(new CachingAuthenticationProvider(passwords, authenticationCache));
     }
 
     @Override
@@ -30,6 +70,21 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                 .and()
                 .requestCache()
                 .requestCache(new NullRequestCache());
+
+        if (tokens != null) {
+            // CSRF tokens are kept in the session, and a bearer token is never sent by the browser on its own;
+            // logout is TokenResource's, not a session invalidation
+            http
+                    .authorizeRequests()
+                    .antMatchers("/token", "/logout").authenticated()
+                    .and()
+                    .sessionManagement()
+                    .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                    .and()
+                    .csrf().disable()
+                    .logout().disable()
+                    .addFilterBefore(new AuthTokenFilter(tokens), BasicAuthenticationFilter.class);
+        }
     }
 }
 
@@ -3,7 +3,6 @@ import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.client.ServiceInstance;
-import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -12,11 +11,11 @@ import org.springframework.web.bind.annotation.RestController;
 class ServiceInstanceController {
 
     @Autowired
-    private DiscoveryClient discoveryClient;
+    private ServiceRegistrySnapshot registry;
 
     @RequestMapping("/service-instances/{applicationName}")
     public List<ServiceInstance> serviceInstancesByApplicationName(
             @PathVariable String applicationName) {
-        return this.discoveryClient.getInstances(applicationName);
+        return this.registry.instances(applicationName);
     }
 }
@@ -0,0 +1,55 @@
+package com.github.smatyukevich.app;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+/**
+ * Requests in flight to one service instance and an exponentially weighted moving average of their
+ * latency, as seen by this instance's {@link ServiceLoadBalancer}.
+ */
+public class ServiceInstanceStats {
+
+    /**
+     * Weight of the latest sample in the moving average.
+     */
+    private static final double ALPHA = 0.2;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    /**
+     * Double bits of the average latency in nanoseconds, 0 until the first sample.
+     */
+    private final AtomicLong averageNanos = new AtomicLong();
+
+    static String key(ServiceInstance instance) {
+        return instance.getServiceId() + "@" + instance.getHost() + ":" + instance.getPort();
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * The average latency in nanoseconds, or 0 if no request has finished yet.
+     */
+    public double getAverageNanos() {
+        return Double.longBitsToDouble(averageNanos.get());
+    }
+
+    void started() {
+        outstanding.incrementAndGet();
+    }
+
+    void finished(long nanos) {
+        outstanding.decrementAndGet();
+        long previous;
+        long next;
+        do {
+            previous = averageNanos.get();
+            double average = Double.longBitsToDouble(previous);
+            next = Double.doubleToLongBits(average == 0 ? nanos : average + ALPHA * (nanos - average));
+        } while (!averageNanos.compareAndSet(previous, next));
+    }
+}
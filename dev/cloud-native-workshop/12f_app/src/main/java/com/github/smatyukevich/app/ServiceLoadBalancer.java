@@ -0,0 +1,94 @@
+package com.github.smatyukevich.app;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.stereotype.Component;
+
+/**
+ * Client-side load balancing over the {@link ServiceRegistrySnapshot}, for outbound calls to other
+ * applications:
+ * <pre>
+ * String quote = loadBalancer.execute("pricing", instance -&gt;
+ *         restTemplate.getForObject(instance.getUri() + "/quote/{id}", String.class, id));
+ * </pre>
+ * The instance is picked by a {@link LoadBalancingStrategy} bean if there is one, otherwise by the one
+ * discovery.load-balancer.strategy names (round-robin by default). Requests in flight and latencies are
+ * tracked per instance for the strategies to use, and dropped when an instance leaves the registry.
+ */
+@Component
+public class ServiceLoadBalancer {
+
+    private final ServiceRegistrySnapshot registry;
+
+    private final LoadBalancingStrategy strategy;
+
+    private final Map<String, ServiceInstanceStats> stats = new ConcurrentHashMap<>();
+
+    private final Function<ServiceInstance, ServiceInstanceStats> statsOf = this::stats;
+
+    @Autowired
+    public ServiceLoadBalancer(ServiceRegistrySnapshot registry,
+                               @Value("${discovery.load-balancer.strategy:round-robin}") String strategy,
+                               ObjectProvider<LoadBalancingStrategy> customStrategy) {
+        this(registry, strategy(customStrategy.getIfAvailable(), strategy));
+    }
+
+    ServiceLoadBalancer(ServiceRegistrySnapshot registry, LoadBalancingStrategy strategy) {
+        this.registry = registry;
+        this.strategy = strategy;
+        registry.subscribe(this::retainRegistered);
+    }
+
+    /**
+     * An instance of the application, or null if none is registered.
+     */
+    public ServiceInstance choose(String applicationName) {
+        List<ServiceInstance> instances = registry.instances(applicationName);
+        return instances.isEmpty() ? null : strategy.choose(instances, statsOf);
+    }
+
+    /**
+     * Sends the request to an instance of the application and records how long it took.
+     *
+     * @throws IllegalStateException if no instance of the application is registered
+     */
+    public <T> T execute(String applicationName, Function<ServiceInstance, T> request) {
+        ServiceInstance instance = choose(applicationName);
+        if (instance == null) {
+            throw new IllegalStateException("No instance of " + applicationName + " is registered");
+        }
+        ServiceInstanceStats instanceStats = stats(instance);
+        instanceStats.started();
+        long start = System.nanoTime();
+        try {
+            return request.apply(instance);
+        } finally {
+            instanceStats.finished(System.nanoTime() - start);
+        }
+    }
+
+    public ServiceInstanceStats stats(ServiceInstance instance) {
+        return stats.computeIfAbsent(ServiceInstanceStats.key(instance), key -> new ServiceInstanceStats());
+    }
+
+    private static LoadBalancingStrategy strategy(LoadBalancingStrategy custom, String name) {
+        return custom != null ? custom : LoadBalancingStrategies.named(name);
+    }
+
+    private void retainRegistered(ServiceRegistrySnapshot snapshot) {
+        Set<String> registered = snapshot.applicationNames().stream()
+                .flatMap(name -> snapshot.instances(name).stream())
+                .map(ServiceInstanceStats::key)
+                .collect(Collectors.toSet());
+        stats.keySet().retainAll(registered);
+    }
+}
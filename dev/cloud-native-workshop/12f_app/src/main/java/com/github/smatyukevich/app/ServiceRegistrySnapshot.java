@@ -0,0 +1,157 @@
+package com.github.smatyukevich.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Local copy of the service registry. It is refreshed every discovery.snapshot.refresh-seconds and
+ * whenever the discovery client reports a registry fetch. Readers get the current immutable snapshot
+ * without locking or calling the discovery client.
+ * <p>
+ * A refresh only replaces the applications whose instances changed; the Eureka client itself already
+ * fetches deltas from the server. If the registry can't be read, the last snapshot is kept.
+ */
+@Component
+public class ServiceRegistrySnapshot implements PublicMetrics, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceRegistrySnapshot.class);
+
+    private final DiscoveryClient discoveryClient;
+
+    private final long refreshSeconds;
+
+    private final ScheduledExecutorService refresher =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("registry-snapshot-"));
+
+    private final List<Consumer<ServiceRegistrySnapshot>> subscribers = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong refreshes = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private volatile Map<String, List<ServiceInstance>> applications = Collections.emptyMap();
+
+    private volatile long refreshedAt;
+
+    @Autowired
+    public ServiceRegistrySnapshot(DiscoveryClient discoveryClient,
+                                   @Value("${discovery.snapshot.refresh-seconds:5}") long refreshSeconds) {
+        this.discoveryClient = discoveryClient;
+        this.refreshSeconds = refreshSeconds;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        refresher.scheduleWithFixedDelay(this::refresh, 0, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    @EventListener(HeartbeatEvent.class)
+    public void registryFetched() {
+        refresher.execute(this::refresh);
+    }
+
+    /**
+     * The instances of the application, empty if it is not registered.
+     */
+    public List<ServiceInstance> instances(String applicationName) {
+        return applications.getOrDefault(applicationName.toLowerCase(Locale.ROOT), Collections.emptyList());
+    }
+
+    public Set<String> applicationNames() {
+        return applications.keySet();
+    }
+
+    /**
+     * Calls the subscriber with this snapshot after each refresh that changed it.
+     */
+    public void subscribe(Consumer<ServiceRegistrySnapshot> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Reads the registry and swaps in a new snapshot if anything changed.
+     */
+    void refresh() {
+        Map<String, List<ServiceInstance>> current = applications;
+        Map<String, List<ServiceInstance>> next = new HashMap<>();
+        boolean changed;
+        try {
+            for (String name : discoveryClient.getServices()) {
+                String key = name.toLowerCase(Locale.ROOT);
+                List<ServiceInstance> previous = current.get(key);
+                List<ServiceInstance> instances = discoveryClient.getInstances(name);
+                next.put(key, previous != null && sameInstances(previous, instances)
+                        ? previous : Collections.unmodifiableList(new ArrayList<>(instances)));
+            }
+            changed = next.size() != current.size()
+                    || next.entrySet().stream().anyMatch(entry -> entry.getValue() != current.get(entry.getKey()));
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            logger.warn("Could not refresh the service registry snapshot, keeping the last one: {}", e.getMessage());
+            return;
+        }
+        refreshes.incrementAndGet();
+        refreshedAt = System.currentTimeMillis();
+        if (changed) {
+            applications = Collections.unmodifiableMap(next);
+            logger.info("Service registry snapshot changed, {} applications", next.size());
+            subscribers.forEach(subscriber -> subscriber.accept(this));
+        }
+    }
+
+    private static boolean sameInstances(List<ServiceInstance> previous, List<ServiceInstance> instances) {
+        return keys(previous).equals(keys(instances));
+    }
+
+    private static Set<String> keys(List<ServiceInstance> instances) {
+        return instances.stream()
+                .map(instance -> ServiceInstanceStats.key(instance) + (instance.getMetadata() == null
+                        ? "" : new TreeMap<>(instance.getMetadata()).toString()))
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        long age = refreshedAt == 0 ? -1 : System.currentTimeMillis() - refreshedAt;
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("discovery.snapshot.applications", applications.size()),
+                new Metric<>("discovery.snapshot.age-ms", age),
+                new Metric<>("discovery.snapshot.refreshes", refreshes.get()),
+                new Metric<>("discovery.snapshot.failures", failures.get()));
+    }
+
+    @Override
+    public void destroy() {
+        refresher.shutdownNow();
+    }
+}
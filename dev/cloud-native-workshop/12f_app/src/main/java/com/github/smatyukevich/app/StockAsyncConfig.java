@@ -0,0 +1,54 @@
+package com.github.smatyukevich.app;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+/**
+ * Runs the stock handlers that return a Callable on a bounded pool instead of on the
+ * Tomcat workers, so a slow database cannot take every worker and /stock/ping and
+ * /health stay responsive. When both the pool and its queue are full the request is
+ * rejected with 503 right away.
+ * <p>
+ * With stock.async.enabled=false the handlers run on the calling worker as before.
+ */
+@Configuration
+public class StockAsyncConfig extends WebMvcConfigurerAdapter {
+
+    @Value("${stock.async.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stock.async.pool-size:100}")
+    private int poolSize;
+
+    @Value("${stock.async.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${stock.async.timeout-ms:30000}")
+    private long timeoutMillis;
+
+    @Bean
+    public ThreadPoolTaskExecutor stockRequestExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("stock-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        AsyncTaskExecutor executor = enabled ? stockRequestExecutor() : new ConcurrentTaskExecutor(Runnable::run);
+        configurer.setTaskExecutor(executor);
+        configurer.setDefaultTimeout(timeoutMillis);
+    }
+}
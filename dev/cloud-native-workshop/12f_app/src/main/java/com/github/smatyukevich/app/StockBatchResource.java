@@ -0,0 +1,192 @@
+package com.github.smatyukevich.app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.transaction.TransactionException;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.smatyukevich.app.StockBatchResult.Status;
+import com.github.smatyukevich.app.domain.model.StockItem;
+
+/**
+ * Bulk variant of the stock item writes. The body is either a JSON array or newline
+ * delimited JSON; it is read incrementally and written through batched JDBC statements
+ * in chunks of stock.batch.chunk-size items, one transaction per chunk. Written items go
+ * through the cache like single writes, so other instances update their search index too.
+ * <p>
+ * Updated items must carry the version they were read at, as single updates need If-Match;
+ * those without are INVALID, and those changed since are reported as CONFLICT.
+ * <p>
+ * Chunks commit independently: when one fails its items are reported as FAILED and the
+ * following chunks are still written, so the answer always lists the outcome of every item.
+ * Items that can't be read as stock items are INVALID. Malformed JSON can't be read past,
+ * so it ends the batch: the answer then stops at that item, after writing the ones before.
+ */
+@RestController
+@RequestMapping(value = "/stock/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+public class StockBatchResource {
+
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private static final Logger logger = LoggerFactory.getLogger(StockBatchResource.class);
+
+    @Autowired
+    private StockItemJdbcRepository stockItemJdbcRepository;
+
+    @Autowired
+    private StockItemCache stockItemCache;
+
+    @Autowired
+    private StockItemSearchIndex stockItemSearchIndex;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${stock.batch.chunk-size:500}")
+    private int chunkSize;
+
+    @RequestMapping(method = RequestMethod.POST, consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    public Callable<List<StockBatchResult>> storeInStock(HttpServletRequest request) {
+        return () -> process(request.getInputStream(), true);
+    }
+
+    @RequestMapping(method = RequestMethod.PUT, consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    public Callable<List<StockBatchResult>> update(HttpServletRequest request) {
+        return () -> process(request.getInputStream(), false);
+    }
+
+    private List<StockBatchResult> process(InputStream body, boolean insert) throws IOException {
+        List<StockBatchResult> results = new ArrayList<>();
+        List<StockItem> chunk = new ArrayList<>(chunkSize);
+        List<Integer> chunkIndexes = new ArrayList<>(chunkSize);
+
+        try (MappingIterator<StockItem> items = objectMapper.readerFor(StockItem.class).readValues(body)) {
+            for (int index = 0; ; index++) {
+                StockItem item;
+                try {
+                    if (!items.hasNextValue()) {
+                        break;
+                    }
+                    item = items.nextValue();
+                } catch (JsonMappingException e) {
+                    // well-formed but not a stock item, e.g. an unknown type; the reader skips past it
+                    results.add(new StockBatchResult(index, null, Status.INVALID));
+                    continue;
+                } catch (JsonProcessingException e) {
+                    logger.warn("Stopped reading batch {} at item {}, the body is malformed: {}",
+                            insert ? "insert" : "update", index, e.getOriginalMessage());
+                    results.add(new StockBatchResult(index, null, Status.INVALID));
+                    break;
+                }
+                if (isValid(item, insert)) {
+                    chunk.add(item);
+                    chunkIndexes.add(index);
+                } else {
+                    results.add(new StockBatchResult(index, item.getId(), Status.INVALID));
+                }
+                if (chunk.size() == chunkSize) {
+                    flush(chunk, chunkIndexes, insert, results);
+                }
+            }
+        }
+        flush(chunk, chunkIndexes, insert, results);
+
+        results.sort(Comparator.comparingInt(StockBatchResult::getIndex));
+        logger.info("Finished batch {} of {} stock items", insert ? "insert" : "update", results.size());
+        return results;
+    }
+
+    private void flush(List<StockItem> chunk, List<Integer> chunkIndexes, boolean insert,
+                       List<StockBatchResult> results) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        List<StockItem> storedItems = null;
+        int[] updateCounts = null;
+        try {
+            if (insert) {
+                // reserved before the insert transaction, so a chunk never holds two connections
+                long firstId = stockItemJdbcRepository.reserveIds(chunk.size());
+                storedItems = stockItemJdbcRepository.insertAll(chunk, firstId);
+            } else {
+                updateCounts = stockItemJdbcRepository.updateAll(chunk);
+            }
+        } catch (DataAccessException | TransactionException e) {
+            logger.warn("Batch {} of {} stock items failed and was rolled back: {}",
+                    insert ? "insert" : "update", chunk.size(), e.getMessage());
+            for (int i = 0; i < chunk.size(); i++) {
+                results.add(new StockBatchResult(chunkIndexes.get(i), chunk.get(i).getId(), Status.FAILED));
+            }
+        }
+
+        if (storedItems != null) {
+            for (int i = 0; i < storedItems.size(); i++) {
+                stockItemCache.put(storedItems.get(i));
+                stockItemSearchIndex.index(storedItems.get(i));
+                results.add(new StockBatchResult(chunkIndexes.get(i), storedItems.get(i).getId(), Status.CREATED));
+            }
+        } else if (updateCounts != null) {
+            List<Long> missed = new ArrayList<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                if (!isUpdated(updateCounts[i])) {
+                    missed.add(chunk.get(i).getId());
+                }
+            }
+            // only to tell a stale version from a missing item, as a single update does
+            Set<Long> stale = stockItemJdbcRepository.findExistingIds(missed);
+            for (int i = 0; i < chunk.size(); i++) {
+                StockItem item = chunk.get(i);
+                Status status;
+                if (isUpdated(updateCounts[i])) {
+                    StockItem updatedItem = new StockItem(item.getId(), item.getType(), item.getTitle(),
+                            item.getDescription(), item.getVersion() + 1);
+                    stockItemCache.put(updatedItem);
+                    stockItemSearchIndex.index(updatedItem);
+                    status = Status.UPDATED;
+                } else {
+                    status = stale.contains(item.getId()) ? Status.CONFLICT : Status.NOT_FOUND;
+                }
+                results.add(new StockBatchResult(chunkIndexes.get(i), item.getId(), status));
+            }
+        }
+
+        chunk.clear();
+        chunkIndexes.clear();
+    }
+
+    private static boolean isUpdated(int updateCount) {
+        return updateCount > 0 || updateCount == Statement.SUCCESS_NO_INFO;
+    }
+
+    /**
+     * Inserts must not carry an id; updates need the id and the version they were read at.
+     */
+    private boolean isValid(StockItem item, boolean insert) {
+        if (item.getType() == null || item.getTitle() == null) {
+            return false;
+        }
+        return insert ? item.getId() == null : item.getId() != null && item.getVersion() != null;
+    }
+}
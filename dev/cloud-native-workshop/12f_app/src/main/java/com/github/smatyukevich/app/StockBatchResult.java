@@ -0,0 +1,46 @@
+package com.github.smatyukevich.app;
+
+/**
+ * Outcome for one item of a batch request, identified by its position in the request body.
+ */
+public class StockBatchResult {
+
+    public enum Status {
+        CREATED,
+        UPDATED,
+        NOT_FOUND,
+        /**
+         * The item was changed since the version it carries, so the update was not applied.
+         */
+        CONFLICT,
+        INVALID,
+        /**
+         * The chunk the item was written in failed and was rolled back.
+         */
+        FAILED
+    }
+
+    private final int index;
+
+    private final Long id;
+
+    private final Status status;
+
+    public StockBatchResult(int index, Long id, Status status) {
+        this.index = index;
+        this.id = id;
+        this.status = status;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.smatyukevich.app;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.smatyukevich.app.domain.model.StockItem;
+
+/**
+ * Bounded read-through cache for single stock item lookups. Entries are evicted by size
+ * and by age; hit, miss and eviction counts are published on the actuator /metrics endpoint.
+ * Setting stock.cache.enabled=false makes every lookup go to the loader.
+ * <p>
+ * When a {@link StockItemSharedTier} is available it is consulted on a local miss before
+ * the loader, and every write is pushed to it and announced to the other instances so they
+ * drop their local copy.
+ */
+@Component
+public class StockItemCache implements PublicMetrics {
+
+    private final boolean enabled;
+
+    private final Cache<Long, StockItem> cache;
+
+    private final StockItemSharedTier sharedTier;
+
+    @Autowired
+    public StockItemCache(@Value("${stock.cache.enabled:true}") boolean enabled,
+                          @Value("${stock.cache.maximum-size:10000}") long maximumSize,
+                          @Value("${stock.cache.ttl-seconds:60}") long ttlSeconds,
+                          ObjectProvider<StockItemSharedTier> sharedTier) {
+        this(enabled, maximumSize, ttlSeconds, sharedTier.getIfAvailable());
+    }
+
+    StockItemCache(boolean enabled, long maximumSize, long ttlSeconds, StockItemSharedTier sharedTier) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        this.sharedTier = enabled ? sharedTier : null;
+        if (this.sharedTier != null) {
+            this.sharedTier.subscribe(cache::invalidate);
+        }
+    }
+
+    /**
+     * Returns the cached item or loads it. Missing items (null from the loader) are not cached.
+     */
+    public StockItem get(Long id, Function<Long, StockItem> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        if (sharedTier == null) {
+            return cache.get(id, loader);
+        }
+        return cache.get(id, key -> {
+            StockItem item = sharedTier.get(key);
+            if (item == null) {
+                item = loader.apply(key);
+                if (item != null) {
+                    sharedTier.storeIfAbsent(item);
+                }
+            }
+            return item;
+        });
+    }
+
+    public void put(StockItem item) {
+        if (!enabled) {
+            return;
+        }
+        cache.put(item.getId(), item);
+        if (sharedTier != null) {
+            sharedTier.store(item);
+            sharedTier.publishInvalidation(item.getId());
+        }
+    }
+
+    public void evict(Long id) {
+        cache.invalidate(id);
+        if (sharedTier != null) {
+            sharedTier.remove(id);
+            sharedTier.publishInvalidation(id);
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        CacheStats stats = cache.stats();
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("stock.cache.size", cache.estimatedSize()),
+                new Metric<>("stock.cache.hits", stats.hitCount()),
+                new Metric<>("stock.cache.misses", stats.missCount()),
+                new Metric<>("stock.cache.evictions", stats.evictionCount()));
+    }
+}
@@ -0,0 +1,243 @@
+package com.github.smatyukevich.app;
+
+import static com.github.smatyukevich.app.domain.model.StockItem.ID_ALLOCATION_SIZE;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.github.smatyukevich.app.domain.model.ItemType;
+import com.github.smatyukevich.app.domain.model.StockItem;
+import com.github.smatyukevich.app.domain.model.StockItemView;
+import com.github.smatyukevich.app.domain.model.StockItemView.Field;
+
+/**
+ * Plain JDBC access to the stock_item table for the paths where going through the
+ * persistence context costs more than it gives, e.g. streaming the whole table or
+ * writing items in bulk.
+ */
+@Repository
+public class StockItemJdbcRepository {
+
+    static final RowMapper<StockItem> STOCK_ITEM_ROW_MAPPER = (rs, rowNum) -> new StockItem(rs.getLong("id"),
+            ItemType.valueOf(rs.getString("type")), rs.getString("title"), rs.getString("description"),
+            rs.getLong("version"));
+
+    private static final String SELECT_ALL_ORDERED_BY_ID =
+            "SELECT id, type, title, description, version FROM stock_item ORDER BY id";
+
+    private static final String COUNT_BY_TYPE =
+            "SELECT type, COUNT(*) FROM stock_item GROUP BY type";
+
+    private static final String INSERT =
+            "INSERT INTO stock_item (id, type, title, description, version) VALUES (?, ?, ?, ?, 0)";
+
+    private static final String UPDATE =
+            "UPDATE stock_item SET type = ?, title = ?, description = ?, version = version + 1 WHERE id = ?";
+
+    private static final String UPDATE_IF_VERSION = UPDATE + " AND version = ?";
+
+    private static final String SELECT_VERSION = "SELECT version FROM stock_item WHERE id = ?";
+
+    private static final String SELECT_IDS = "SELECT id FROM stock_item WHERE id IN (";
+
+    private static final String DELETE = "DELETE FROM stock_item WHERE id = ?";
+
+    private static final String DELETE_IF_VERSION = DELETE + " AND version = ?";
+
+    private static final String SELECT_NEXT_ID_FOR_UPDATE =
+            "SELECT next_val FROM stock_item_sequence WHERE sequence_name = 'stock_item' FOR UPDATE";
+
+    private static final String UPDATE_NEXT_ID =
+            "UPDATE stock_item_sequence SET next_val = ? WHERE sequence_name = 'stock_item'";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate idAllocationTransaction;
+
+    /**
+     * Rows fetched per round trip while streaming. MySQL only honours it when the
+     * connection url has useCursorFetch=true, otherwise use Integer.MIN_VALUE to get
+     * the driver's row-by-row streaming mode.
+     */
+    @Value("${stock.stream.fetch-size:500}")
+    private int streamFetchSize;
+
+    @Autowired
+    public StockItemJdbcRepository(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idAllocationTransaction = new TransactionTemplate(transactionManager);
+        this.idAllocationTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Hands every stock item to the callback in primary key order without keeping more
+     * than one fetch of rows in memory.
+     */
+    public void streamAll(final StockItemCallback callback) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement statement = con.prepareStatement(SELECT_ALL_ORDERED_BY_ID,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(streamFetchSize);
+            return statement;
+        }, (RowCallbackHandler) rs -> callback.onItem(STOCK_ITEM_ROW_MAPPER.mapRow(rs, 0)));
+    }
+
+    /**
+     * One keyset page of items with id greater than {@code after}, optionally of one type,
+     * reading only the requested columns. The rows are mapped straight to read-only views,
+     * so nothing is attached to a persistence context or snapshotted for dirty checking.
+     */
+    public List<StockItemView> findPage(ItemType type, long after, int limit, Set<Field> fields) {
+        StringBuilder sql = new StringBuilder("SELECT id, version");
+        for (Field field : fields) {
+            if (field != Field.ID) {
+                sql.append(", ").append(field.column());
+            }
+        }
+        sql.append(" FROM stock_item WHERE ");
+        if (type != null) {
+            sql.append("type = ? AND ");
+        }
+        sql.append("id > ? ORDER BY id LIMIT ?");
+
+        Object[] args = type == null ? new Object[]{after, limit} : new Object[]{type.name(), after, limit};
+        boolean withType = fields.contains(Field.TYPE);
+        boolean withTitle = fields.contains(Field.TITLE);
+        boolean withDescription = fields.contains(Field.DESCRIPTION);
+        return jdbcTemplate.query(sql.toString(), args, (rs, rowNum) -> new StockItemView(rs.getLong("id"),
+                withType ? ItemType.valueOf(rs.getString("type")) : null,
+                withTitle ? rs.getString("title") : null,
+                withDescription ? rs.getString("description") : null,
+                rs.getLong("version")));
+    }
+
+    /**
+     * Number of stock items per type, computed by the database over the type index.
+     */
+    public Map<ItemType, Long> countByType() {
+        Map<ItemType, Long> counts = new EnumMap<>(ItemType.class);
+        jdbcTemplate.query(COUNT_BY_TYPE,
+                (RowCallbackHandler) rs -> counts.put(ItemType.valueOf(rs.getString(1)), rs.getLong(2)));
+        return counts;
+    }
+
+    /**
+     * Inserts the items with one batched statement under the ids from {@code firstId} on,
+     * reserved with {@link #reserveIds(int)}, and returns them with their ids. Add
+     * rewriteBatchedStatements=true to the MySQL url to have the driver send the batch as
+     * multi-row inserts.
+     */
+    @Transactional
+    public List<StockItem> insertAll(List<StockItem> items, long firstId) {
+        List<StockItem> storedItems = new ArrayList<>(items.size());
+        for (StockItem item : items) {
+            storedItems.add(new StockItem(firstId + storedItems.size(), item.getType(), item.getTitle(),
+                    item.getDescription(), 0L));
+        }
+
+        jdbcTemplate.batchUpdate(INSERT, storedItems, storedItems.size(), (ps, item) -> {
+            ps.setLong(1, item.getId());
+            ps.setString(2, item.getType().name());
+            ps.setString(3, item.getTitle());
+            ps.setString(4, item.getDescription());
+        });
+        return storedItems;
+    }
+
+    /**
+     * Updates the items with one batched statement, each only while its stored version is
+     * still the one it carries, and returns the per-item update counts. 0 means the item
+     * does not exist or has a newer version, and {@link Statement#SUCCESS_NO_INFO} that the
+     * driver did not report a count.
+     */
+    @Transactional
+    public int[] updateAll(List<StockItem> items) {
+        return jdbcTemplate.batchUpdate(UPDATE_IF_VERSION, items, items.size(), (ps, item) -> {
+            ps.setString(1, item.getType().name());
+            ps.setString(2, item.getTitle());
+            ps.setString(3, item.getDescription());
+            ps.setLong(4, item.getId());
+            ps.setLong(5, item.getVersion());
+        })[0];
+    }
+
+    /**
+     * The ones of the given ids that exist.
+     */
+    public Set<Long> findExistingIds(List<Long> ids) {
+        Set<Long> existing = new HashSet<>();
+        if (ids.isEmpty()) {
+            return existing;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.query(SELECT_IDS + placeholders + ")", ids.toArray(),
+                (RowCallbackHandler) rs -> existing.add(rs.getLong(1)));
+        return existing;
+    }
+
+    /**
+     * Updates one item and bumps its version. With an expected version the update only
+     * applies while the stored version still matches. Returns the new version, or null when
+     * no row was updated.
+     */
+    @Transactional
+    public Long update(StockItem item, Long expectedVersion) {
+        String type = item.getType() == null ? null : item.getType().name();
+        if (expectedVersion != null) {
+            int count = jdbcTemplate.update(UPDATE_IF_VERSION, type, item.getTitle(), item.getDescription(),
+                    item.getId(), expectedVersion);
+            return count == 0 ? null : expectedVersion + 1;
+        }
+        int count = jdbcTemplate.update(UPDATE, type, item.getTitle(), item.getDescription(), item.getId());
+        return count == 0 ? null : jdbcTemplate.queryForObject(SELECT_VERSION, Long.class, item.getId());
+    }
+
+    /**
+     * Deletes one item, only while its version matches when {@code expectedVersion} is given.
+     */
+    public boolean delete(Long id, Long expectedVersion) {
+        int count = expectedVersion == null
+                ? jdbcTemplate.update(DELETE, id)
+                : jdbcTemplate.update(DELETE_IF_VERSION, id, expectedVersion);
+        return count > 0;
+    }
+
+    /**
+     * Reserves a contiguous range of {@code count} ids in whole blocks and returns the first,
+     * following the same pooled semantics as the Hibernate table generator on
+     * {@link StockItem}: the stored value is the last id of the next block. Runs in its own
+     * transaction so the sequence row stays locked only for the reservation; call it before
+     * the transaction the ids are used in, or it needs a second connection meanwhile.
+     */
+    public long reserveIds(int count) {
+        final int blocks = (count + ID_ALLOCATION_SIZE - 1) / ID_ALLOCATION_SIZE;
+        return idAllocationTransaction.execute(status -> {
+            long lastIdOfNextBlock = jdbcTemplate.queryForObject(SELECT_NEXT_ID_FOR_UPDATE, Long.class);
+            jdbcTemplate.update(UPDATE_NEXT_ID, lastIdOfNextBlock + (long) blocks * ID_ALLOCATION_SIZE);
+            return lastIdOfNextBlock - ID_ALLOCATION_SIZE + 1;
+        });
+    }
+
+    public interface StockItemCallback {
+        void onItem(StockItem item);
+    }
+}
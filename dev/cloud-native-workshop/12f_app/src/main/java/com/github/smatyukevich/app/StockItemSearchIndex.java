@@ -0,0 +1,539 @@
+package com.github.smatyukevich.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.github.smatyukevich.app.domain.model.StockItem;
+
+/**
+ * In-memory inverted index over stock item titles and descriptions. It is built from the
+ * database once the application is ready and kept current by the write paths, and by
+ * invalidations from other instances when a {@link StockItemSharedTier} is available. An
+ * invalidated item is taken from the shared tier, where the writing instance stored it, and
+ * only read from the database when it is not there; items that can't be refreshed are
+ * retried every stock.search.retry-seconds.
+ * <p>
+ * Every query term has to match. The last one also matches as a prefix unless the query
+ * ends with a space. Results are ranked by the sum of tf-idf style weights, with title
+ * words counting more than description words.
+ * <p>
+ * The index lives on the heap, roughly 860 bytes per item with typical titles and
+ * descriptions, so a million items take about 860 MB of the 1G the manifest gives the app.
+ * stock.search.estimated-bytes reports the current size; setting stock.search.enabled=false
+ * turns the index off and the search endpoint answers 404.
+ */
+@Component
+public class StockItemSearchIndex implements PublicMetrics, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockItemSearchIndex.class);
+
+    private static final float TITLE_WEIGHT = 3f;
+
+    private static final float DESCRIPTION_WEIGHT = 1f;
+
+    /**
+     * Prefixes expanding to more terms are merged into one postings list before the walk.
+     */
+    private static final int MAX_WALKED_EXPANSIONS = 16;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final NavigableMap<String, Postings> postingsByTerm = new TreeMap<>();
+
+    private final Map<Long, Postings[]> postingsByItem = new HashMap<>();
+
+    /**
+     * Items whose invalidation could not be applied yet.
+     */
+    private final Set<Long> stale = ConcurrentHashMap.newKeySet();
+
+    private final boolean enabled;
+
+    private StockItemJdbcRepository stockItemJdbcRepository;
+
+    private StockItemRepository stockItemRepository;
+
+    private StockItemSharedTier sharedTier;
+
+    private ScheduledExecutorService retrier;
+
+    StockItemSearchIndex() {
+        this(true, null, null, 0);
+    }
+
+    @Autowired
+    public StockItemSearchIndex(@Value("${stock.search.enabled:true}") boolean enabled,
+                                StockItemJdbcRepository stockItemJdbcRepository,
+                                StockItemRepository stockItemRepository,
+                                ObjectProvider<StockItemSharedTier> sharedTier,
+                                @Value("${stock.search.retry-seconds:5}") long retrySeconds) {
+        this(enabled, stockItemRepository, sharedTier.getIfAvailable(), retrySeconds);
+        this.stockItemJdbcRepository = stockItemJdbcRepository;
+    }
+
+    StockItemSearchIndex(boolean enabled, StockItemRepository stockItemRepository, StockItemSharedTier sharedTier,
+                         long retrySeconds) {
+        this.enabled = enabled;
+        this.stockItemRepository = stockItemRepository;
+        this.sharedTier = sharedTier;
+        if (enabled && sharedTier != null) {
+            sharedTier.subscribe(this::refresh);
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("search-retry-");
+            threadFactory.setDaemon(true);
+            retrier = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            retrier.scheduleWithFixedDelay(this::retryStale, retrySeconds, retrySeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        stockItemJdbcRepository.streamAll(this::index);
+        logger.info("Indexed {} stock items for search in {} ms", size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void index(StockItem item) {
+        if (!enabled) {
+            return;
+        }
+        Map<String, Float> weights = new HashMap<>();
+        addTerms(item.getTitle(), TITLE_WEIGHT, weights);
+        addTerms(item.getDescription(), DESCRIPTION_WEIGHT, weights);
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(item.getId());
+            Postings[] itemPostings = new Postings[weights.size()];
+            int i = 0;
+            for (Map.Entry<String, Float> weight : weights.entrySet()) {
+                Postings postings = postingsByTerm.computeIfAbsent(weight.getKey(), Postings::new);
+                postings.add(item.getId(), weight.getValue());
+                itemPostings[i++] = postings;
+            }
+            postingsByItem.put(item.getId(), itemPostings);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the best matching items, best first.
+     */
+    public List<Long> search(String query, int limit) {
+        List<String> terms = new ArrayList<>(tokenize(query).keySet());
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+        boolean lastIsPrefix = !Character.isWhitespace(query.charAt(query.length() - 1));
+
+        lock.readLock().lock();
+        try {
+            List<Collection<Postings>> matches = new ArrayList<>(terms.size());
+            int rarest = 0;
+            for (int i = 0; i < terms.size(); i++) {
+                Collection<Postings> termMatches = lastIsPrefix && i == terms.size() - 1
+                        ? prefixMatches(terms.get(i))
+                        : exactMatches(terms.get(i));
+                if (termMatches.isEmpty()) {
+                    return Collections.emptyList();
+                }
+                matches.add(termMatches);
+                if (postingCount(termMatches) < postingCount(matches.get(rarest))) {
+                    rarest = i;
+                }
+            }
+            // walk the items of the rarest term, looking each one up in the postings of the others
+            int itemCount = postingsByItem.size();
+            Cursor candidates = new Cursor(matches.remove(rarest), itemCount);
+            Cursor[] others = new Cursor[matches.size()];
+            for (int i = 0; i < others.length; i++) {
+                others[i] = new Cursor(matches.get(i), itemCount);
+            }
+            TopScores top = new TopScores(limit);
+            while (candidates.next()) {
+                float score = candidates.score;
+                for (int i = 0; i < others.length && score >= 0; i++) {
+                    float termScore = others[i].seek(candidates.id);
+                    score = termScore < 0 ? -1f : score + termScore;
+                }
+                if (score >= 0) {
+                    top.offer(candidates.id, score);
+                }
+            }
+            return top.ids();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return postingsByItem.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        lock.readLock().lock();
+        try {
+            long postingCount = 0;
+            long bytes = 0;
+            for (Map.Entry<String, Postings> entry : postingsByTerm.entrySet()) {
+                postingCount += entry.getValue().size;
+                // tree map entry + term string + postings object with its two arrays
+                bytes += 40 + 40 + 2L * entry.getKey().length() + 32 + 32 + 12L * entry.getValue().ids.length;
+            }
+            for (Postings[] itemPostings : postingsByItem.values()) {
+                // hash map entry + boxed id + postings reference array
+                bytes += 48 + 16 + 16 + 4L * itemPostings.length;
+            }
+            return Arrays.<Metric<?>>asList(
+                    new Metric<>("stock.search.items", postingsByItem.size()),
+                    new Metric<>("stock.search.terms", postingsByTerm.size()),
+                    new Metric<>("stock.search.postings", postingCount),
+                    new Metric<>("stock.search.stale", stale.size()),
+                    new Metric<>("stock.search.estimated-bytes", bytes));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (retrier != null) {
+            retrier.shutdownNow();
+        }
+    }
+
+    private void refresh(Long id) {
+        try {
+            StockItem item = sharedTier.get(id);
+            if (item == null) {
+                item = stockItemRepository.findOne(id);
+            }
+            if (item == null) {
+                remove(id);
+            } else {
+                index(item);
+            }
+            stale.remove(id);
+        } catch (RuntimeException e) {
+            if (stale.add(id)) {
+                logger.warn("Could not refresh stock item(id={}) in the search index, will retry: {}", id, e.getMessage());
+            }
+        }
+    }
+
+    void retryStale() {
+        for (Long id : stale) {
+            refresh(id);
+        }
+    }
+
+    private void removeLocked(Long id) {
+        Postings[] itemPostings = postingsByItem.remove(id);
+        if (itemPostings == null) {
+            return;
+        }
+        for (Postings postings : itemPostings) {
+            postings.remove(id);
+            if (postings.size == 0) {
+                postingsByTerm.remove(postings.term);
+            }
+        }
+    }
+
+    private Collection<Postings> exactMatches(String term) {
+        Postings postings = postingsByTerm.get(term);
+        return postings == null ? Collections.<Postings>emptyList() : Collections.singletonList(postings);
+    }
+
+    private Collection<Postings> prefixMatches(String prefix) {
+        return postingsByTerm.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+    }
+
+    private static long postingCount(Collection<Postings> postings) {
+        long count = 0;
+        for (Postings p : postings) {
+            count += p.size;
+        }
+        return count;
+    }
+
+    private static void addTerms(String text, float weight, Map<String, Float> weights) {
+        for (Map.Entry<String, Integer> term : tokenize(text).entrySet()) {
+            weights.merge(term.getKey(), weight * term.getValue(), Float::sum);
+        }
+    }
+
+    /**
+     * Lower-cased runs of letters and digits with their number of occurrences, in order of
+     * first appearance.
+     */
+    static Map<String, Integer> tokenize(String text) {
+        Map<String, Integer> terms = new LinkedHashMap<>();
+        if (text == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean partOfTerm = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (partOfTerm && start < 0) {
+                start = i;
+            } else if (!partOfTerm && start >= 0) {
+                terms.merge(text.substring(start, i).toLowerCase(Locale.ROOT), 1, Integer::sum);
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Item ids containing one term in ascending order, with the weight of the term in each item.
+     */
+    private static final class Postings {
+
+        private final String term;
+
+        private long[] ids = new long[2];
+
+        private float[] weights = new float[2];
+
+        private int size;
+
+        Postings(String term) {
+            this.term = term;
+        }
+
+        void add(long id, float weight) {
+            // items are indexed in id order when the index is built, so this is usually an append
+            int i = size == 0 || ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+            if (i >= 0 && i < size) {
+                weights[i] = weight;
+                return;
+            }
+            if (i < 0) {
+                i = -i - 1;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            System.arraycopy(ids, i, ids, i + 1, size - i);
+            System.arraycopy(weights, i, weights, i + 1, size - i);
+            ids[i] = id;
+            weights[i] = weight;
+            size++;
+        }
+
+        void remove(long id) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i >= 0) {
+                size--;
+                System.arraycopy(ids, i + 1, ids, i, size - i);
+                System.arraycopy(weights, i + 1, weights, i, size - i);
+            }
+        }
+    }
+
+    /**
+     * Walks the postings one query term matched, several when it was expanded as a prefix, in id
+     * order. An item's score for the term is its best weighted match among them.
+     */
+    private static final class Cursor {
+
+        private final Postings[] postings;
+
+        private final float[] idfs;
+
+        private final int[] positions;
+
+        private long id;
+
+        private float score;
+
+        Cursor(Collection<Postings> termMatches, int itemCount) {
+            Postings[] matched = termMatches.toArray(new Postings[termMatches.size()]);
+            float[] matchedIdfs = new float[matched.length];
+            for (int i = 0; i < matched.length; i++) {
+                matchedIdfs[i] = (float) Math.log(1 + (double) itemCount / matched[i].size);
+            }
+            if (matched.length > MAX_WALKED_EXPANSIONS) {
+                postings = new Postings[]{merge(matched, matchedIdfs)};
+                idfs = new float[]{1f};
+            } else {
+                postings = matched;
+                idfs = matchedIdfs;
+            }
+            positions = new int[postings.length];
+        }
+
+        /**
+         * One postings list over all the items of the given ones, weighted with their idfs and
+         * keeping the best weight of an item.
+         */
+        private static Postings merge(Postings[] postings, float[] idfs) {
+            int total = 0;
+            for (Postings p : postings) {
+                total += p.size;
+            }
+            long[] ids = new long[total];
+            int size = 0;
+            for (Postings p : postings) {
+                System.arraycopy(p.ids, 0, ids, size, p.size);
+                size += p.size;
+            }
+            Arrays.sort(ids);
+            int distinct = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (i == 0 || ids[i] != ids[distinct - 1]) {
+                    ids[distinct++] = ids[i];
+                }
+            }
+            float[] weights = new float[distinct];
+            Arrays.fill(weights, -1f);
+            for (int i = 0; i < postings.length; i++) {
+                for (int j = 0; j < postings[i].size; j++) {
+                    int position = Arrays.binarySearch(ids, 0, distinct, postings[i].ids[j]);
+                    weights[position] = Math.max(weights[position], postings[i].weights[j] * idfs[i]);
+                }
+            }
+            Postings merged = new Postings(null);
+            merged.ids = ids;
+            merged.weights = weights;
+            merged.size = distinct;
+            return merged;
+        }
+
+        /**
+         * Moves to the next item in any of the postings.
+         *
+         * @return false when all are exhausted
+         */
+        boolean next() {
+            boolean found = false;
+            for (int i = 0; i < postings.length; i++) {
+                if (positions[i] < postings[i].size && (!found || postings[i].ids[positions[i]] < id)) {
+                    id = postings[i].ids[positions[i]];
+                    found = true;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+            score = -1f;
+            for (int i = 0; i < postings.length; i++) {
+                if (positions[i] < postings[i].size && postings[i].ids[positions[i]] == id) {
+                    score = Math.max(score, postings[i].weights[positions[i]] * idfs[i]);
+                    positions[i]++;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Skips to the given item, which must not be lower than the one asked for before.
+         *
+         * @return the item's score for the term, or -1 if it doesn't contain it
+         */
+        float seek(long target) {
+            float best = -1f;
+            for (int i = 0; i < postings.length; i++) {
+                int position = Arrays.binarySearch(postings[i].ids, positions[i], postings[i].size, target);
+                if (position >= 0) {
+                    best = Math.max(best, postings[i].weights[position] * idfs[i]);
+                    positions[i] = position + 1;
+                } else {
+                    positions[i] = -position - 1;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * The best scoring ids offered so far, best first.
+     */
+    private static final class TopScores {
+
+        private final long[] ids;
+
+        private final float[] scores;
+
+        private int size;
+
+        TopScores(int limit) {
+            ids = new long[Math.max(0, limit)];
+            scores = new float[ids.length];
+        }
+
+        void offer(long id, float score) {
+            if (size == ids.length && (size == 0 || score <= scores[size - 1])) {
+                return;
+            }
+            int i = size == ids.length ? size - 1 : size++;
+            for (; i > 0 && scores[i - 1] < score; i--) {
+                ids[i] = ids[i - 1];
+                scores[i] = scores[i - 1];
+            }
+            ids[i] = id;
+            scores[i] = score;
+        }
+
+        List<Long> ids() {
+            List<Long> top = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                top.add(ids[i]);
+            }
+            return top;
+        }
+    }
+}
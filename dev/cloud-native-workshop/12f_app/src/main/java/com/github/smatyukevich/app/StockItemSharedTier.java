@@ -0,0 +1,34 @@
+package com.github.smatyukevich.app;
+
+import java.util.function.Consumer;
+
+import com.github.smatyukevich.app.domain.model.StockItem;
+
+/**
+ * Second cache tier shared by every instance of the app, together with the channel used
+ * to tell the other instances to drop their local copy of an item.
+ */
+public interface StockItemSharedTier {
+
+    StockItem get(Long id);
+
+    void store(StockItem item);
+
+    /**
+     * Stores the item unless there is one already, so that a value read from the database
+     * can't overwrite a newer one written meanwhile.
+     */
+    void storeIfAbsent(StockItem item);
+
+    void remove(Long id);
+
+    /**
+     * Tells every other instance that its local copy of the item is stale.
+     */
+    void publishInvalidation(Long id);
+
+    /**
+     * Registers the listener for invalidations published by the other instances.
+     */
+    void subscribe(Consumer<Long> listener);
+}
@@ -2,19 +2,38 @@ package com.github.smatyukevich.app;
 
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.smatyukevich.app.domain.model.ItemType;
 import com.github.smatyukevich.app.domain.model.StockItem;
+import com.github.smatyukevich.app.domain.model.StockItemView;
+import com.github.smatyukevich.app.domain.model.StockItemView.Field;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 
@@ -26,8 +45,27 @@ public class StockResource {
 	
 	@Autowired
 	private StockItemRepository stockItemRepository;
+
+	@Autowired
+	private StockItemJdbcRepository stockItemJdbcRepository;
+
+	@Autowired
+	private StockItemCache stockItemCache;
+
+	@Autowired
+	private StockItemSearchIndex stockItemSearchIndex;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Value("${stock.page.max-limit:1000}")
+	private int maxPageLimit;
 	
 	private static final Logger logger = LoggerFactory.getLogger(StockResource.class);
+
+	private static final String DEFAULT_FIELDS = "id,type,title,description";
+
+	private static final String ANY_ETAG = "*";
 	
 	@RequestMapping(value = "/get-env", method = RequestMethod.GET)
 	public String getEnv(@RequestParam String env) {
@@ -40,56 +78,267 @@ public class StockResource {
     }
    
 
+    /**
+     * Returns the item with its version as ETag, or 304 when the client's If-None-Match
+     * still matches.
+     */
     @RequestMapping(method = RequestMethod.GET, value = "/{id}")
-    public StockItem stockItem(@PathVariable("id") Long id, HttpServletResponse response) {
-        logger.info("Starting search of stock item(id={}) search", id);
+    public Callable<StockItem> stockItem(@PathVariable("id") Long id, WebRequest request, HttpServletResponse response) {
+        return () -> {
+            logger.info("Starting search of stock item(id={}) search", id);
 
-        StockItem stockItem = stockItemRepository.findOne(id);
+            StockItem stockItem = stockItemCache.get(id, stockItemRepository::findOne);
 
-        if (stockItem == null) {
-            logger.info("Stock item(id={}) has not been found", id);
-            response.setStatus(HttpStatus.NOT_FOUND.value());
-            return null;
-        }
+            if (stockItem == null) {
+                logger.info("Stock item(id={}) has not been found", id);
+                response.setStatus(HttpStatus.NOT_FOUND.value());
+                return null;
+            }
 
-        logger.info("Finishing search of stock item(id={}) search", id);
-        return stockItem;
+            if (request.checkNotModified(etag(stockItem.getVersion()))) {
+                logger.info("Stock item(id={}) has not been modified", id);
+                return null;
+            }
+
+            logger.info("Finishing search of stock item(id={}) search", id);
+            return stockItem;
+        };
     }
 
     @RequestMapping(value = "", method = RequestMethod.POST)
-    public StockItem storeInStock(@RequestBody StockItem stockItem, HttpServletResponse response) {
-        StockItem storedItem = stockItemRepository.save(stockItem);
+    public Callable<StockItem> storeInStock(@RequestBody StockItem stockItem, HttpServletResponse response) {
+        return () -> {
+            StockItem storedItem = stockItemRepository.save(stockItem);
+            stockItemCache.put(storedItem);
+            stockItemSearchIndex.index(storedItem);
 
-        response.setStatus(HttpStatus.CREATED.value());
+            response.setStatus(HttpStatus.CREATED.value());
+            response.setHeader(HttpHeaders.ETAG, etag(storedItem.getVersion()));
 
-        return storedItem;
+            return storedItem;
+        };
     }
 
+    /**
+     * Updates the item in a single statement. If-Match is required (428 without it): the
+     * update only applies while the stored version matches, otherwise the answer is 412,
+     * and {@code *} updates any version. Existence is checked only after a miss to tell 404
+     * from 412.
+     */
     @RequestMapping(value = "", method = RequestMethod.PUT)
-    public StockItem update(@RequestBody StockItem stockItem, HttpServletResponse response) {
-        if (!stockItemRepository.exists(stockItem.getId())) {
-            response.setStatus(HttpStatus.NOT_FOUND.value());
-            return stockItem;
-        }
+    public Callable<StockItem> update(@RequestBody StockItem stockItem,
+                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                      HttpServletResponse response) {
+        return () -> {
+            if (stockItem.getId() == null) {
+                response.setStatus(HttpStatus.BAD_REQUEST.value());
+                return stockItem;
+            }
+
+            if (ifMatch == null) {
+                response.setStatus(HttpStatus.PRECONDITION_REQUIRED.value());
+                return stockItem;
+            }
+
+            Long expectedVersion = null;
+            if (!ANY_ETAG.equals(ifMatch.trim())) {
+                expectedVersion = parseEtag(ifMatch);
+                if (expectedVersion == null) {
+                    response.setStatus(HttpStatus.PRECONDITION_FAILED.value());
+                    return stockItem;
+                }
+            }
+
+            Long version = stockItemJdbcRepository.update(stockItem, expectedVersion);
+            if (version == null) {
+                boolean exists = expectedVersion != null && stockItemRepository.exists(stockItem.getId());
+                response.setStatus(exists ? HttpStatus.PRECONDITION_FAILED.value() : HttpStatus.NOT_FOUND.value());
+                return stockItem;
+            }
 
-        return stockItemRepository.save(stockItem);
+            StockItem updatedItem = new StockItem(stockItem.getId(), stockItem.getType(), stockItem.getTitle(),
+                    stockItem.getDescription(), version);
+            stockItemCache.put(updatedItem);
+            stockItemSearchIndex.index(updatedItem);
+
+            response.setHeader(HttpHeaders.ETAG, etag(version));
+            return updatedItem;
+        };
     }
 
+    /**
+     * Deletes the item. Like updates, it requires If-Match with the current version or {@code *}.
+     */
     @RequestMapping(value = "/{id}", method = RequestMethod.DELETE)
-    public void removeFromStock(@PathVariable("id") Long id, HttpServletResponse response) {
-        StockItem stockItemToRemove = stockItemRepository.findOne(id);
+    public Callable<Void> removeFromStock(@PathVariable("id") Long id,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                          HttpServletResponse response) {
+        return () -> {
+            if (ifMatch == null) {
+                response.setStatus(HttpStatus.PRECONDITION_REQUIRED.value());
+                return null;
+            }
 
-        if (stockItemToRemove == null) {
-            response.setStatus(HttpStatus.NOT_FOUND.value());
-            return;
-        }
+            Long expectedVersion = null;
+            if (!ANY_ETAG.equals(ifMatch.trim())) {
+                expectedVersion = parseEtag(ifMatch);
+                if (expectedVersion == null) {
+                    response.setStatus(HttpStatus.PRECONDITION_FAILED.value());
+                    return null;
+                }
+            }
+
+            if (!stockItemJdbcRepository.delete(id, expectedVersion)) {
+                boolean exists = expectedVersion != null && stockItemRepository.exists(id);
+                response.setStatus(exists ? HttpStatus.PRECONDITION_FAILED.value() : HttpStatus.NOT_FOUND.value());
+                return null;
+            }
 
-        stockItemRepository.delete(stockItemToRemove);
+            stockItemCache.evict(id);
+            stockItemSearchIndex.remove(id);
+            return null;
+        };
     }
 
+    /**
+     * Keyset paginated listing ordered by id, optionally restricted to one type. Pass the id
+     * of the last item received as {@code after} to get the next page; a {@code Link} header
+     * points to it while the page is full. {@code fields} limits the columns read and
+     * returned, e.g. {@code fields=id,type,title}.
+     */
     @RequestMapping(value = "", method = RequestMethod.GET)
-    public Iterable<StockItem> items() {
-        return stockItemRepository.findAll();
+    public Callable<List<StockItemView>> items(@RequestParam(value = "type", required = false) ItemType type,
+                                               @RequestParam(value = "after", defaultValue = "0") Long after,
+                                               @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                               @RequestParam(value = "fields", defaultValue = DEFAULT_FIELDS) String fields,
+                                               WebRequest request, HttpServletResponse response) {
+        return () -> {
+            Set<Field> selectedFields;
+            try {
+                selectedFields = Field.parse(fields);
+            } catch (IllegalArgumentException e) {
+                response.setStatus(HttpStatus.BAD_REQUEST.value());
+                return null;
+            }
+
+            int pageSize = Math.max(1, Math.min(limit, maxPageLimit));
+            List<StockItemView> page = stockItemJdbcRepository.findPage(type, after, pageSize, selectedFields);
+
+            if (page.size() == pageSize) {
+                UriComponentsBuilder next = UriComponentsBuilder.fromPath("/stock");
+                if (type != null) {
+                    next.queryParam("type", type);
+                }
+                next.queryParam("after", page.get(page.size() - 1).getId()).queryParam("limit", pageSize);
+                if (!DEFAULT_FIELDS.equals(fields)) {
+                    next.queryParam("fields", fields);
+                }
+                response.setHeader("Link", "<" + next.build().encode().toUriString() + ">; rel=\"next\"");
+            }
+
+            if (request.checkNotModified(pageEtag(page, selectedFields))) {
+                return null;
+            }
+
+            return page;
+        };
+    }
+
+    /**
+     * Words in title and description, best matches first; the last word also matches as a prefix.
+     * Not found when the search index is turned off.
+     */
+    @RequestMapping(value = "/search", method = RequestMethod.GET)
+    public Callable<List<StockItem>> search(@RequestParam("q") String query,
+                                            @RequestParam(value = "limit", defaultValue = "20") int limit,
+                                            HttpServletResponse response) {
+        return () -> {
+            if (!stockItemSearchIndex.isEnabled()) {
+                response.setStatus(HttpStatus.NOT_FOUND.value());
+                return null;
+            }
+            List<Long> ids = stockItemSearchIndex.search(query, Math.max(1, Math.min(limit, maxPageLimit)));
+
+            List<StockItem> items = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                StockItem item = stockItemCache.get(id, stockItemRepository::findOne);
+                if (item != null) {
+                    items.add(item);
+                }
+            }
+            return items;
+        };
+    }
+
+    @RequestMapping(value = "/counts", method = RequestMethod.GET)
+    public Callable<Map<ItemType, Long>> countsByType() {
+        return stockItemJdbcRepository::countByType;
+    }
+
+    /**
+     * Writes the whole table as a JSON array straight from the JDBC result set, so memory
+     * use does not grow with the number of rows.
+     */
+    @RequestMapping(value = "/stream", method = RequestMethod.GET)
+    public StreamingResponseBody streamItems(HttpServletResponse response) {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+
+        return outputStream -> {
+            final JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+            generator.writeStartArray();
+            stockItemJdbcRepository.streamAll(item -> {
+                try {
+                    generator.writeObject(item);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+            generator.close();
+        };
+    }
+
+    private static String etag(Long version) {
+        return "\"" + version + "\"";
     }
-}
 
+    /**
+     * Version from an ETag produced by {@link #etag(Long)}, or null if it is not one.
+     */
+    private static Long parseEtag(String etag) {
+        String value = etag.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() < 2 || value.charAt(0) != '"' || value.charAt(value.length() - 1) != '"') {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.substring(1, value.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * ETag of a listing page: a 64-bit FNV-1a hash over the selected fields and the id and
+     * version of every item on the page.
+     */
+    private static String pageEtag(List<StockItemView> page, Set<Field> fields) {
+        long hash = 0xcbf29ce484222325L;
+        hash = fnv(hash, fields.hashCode());
+        for (StockItemView item : page) {
+            hash = fnv(hash, item.getId());
+            hash = fnv(hash, item.getVersion());
+        }
+        return "\"" + Long.toHexString(hash) + "\"";
+    }
+
+    private static long fnv(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
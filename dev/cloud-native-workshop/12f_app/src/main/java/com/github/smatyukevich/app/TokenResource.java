@@ -0,0 +1,50 @@
+package com.github.smatyukevich.app;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Login and logout for the stateless profile: a Basic login is exchanged for a token, logout revokes
+ * the token the request was made with.
+ */
+@RestController
+@Profile("stateless")
+public class TokenResource {
+
+    private final AuthTokenService tokens;
+
+    private final AuthenticationCache authenticationCache;
+
+    @Autowired
+    public TokenResource(AuthTokenService tokens, AuthenticationCache authenticationCache) {
+        this.tokens = tokens;
+        this.authenticationCache = authenticationCache;
+    }
+
+    @RequestMapping(value = "/token", method = RequestMethod.POST)
+    public String token(Authentication authentication) {
+        // a token can't be used to get a fresh one, or it would never expire
+        if (authentication instanceof PreAuthenticatedAuthenticationToken) {
+            throw new AccessDeniedException("Log in with a password to get a token");
+        }
+        return tokens.issue(authentication);
+    }
+
+    @RequestMapping(value = "/logout", method = RequestMethod.GET)
+    public String logout(HttpServletRequest request, Authentication authentication) {
+        String token = AuthTokenFilter.token(request);
+        if (token != null) {
+            tokens.revoke(token);
+        }
+        authenticationCache.invalidate(authentication.getName());
+        return "Logout done!";
+    }
+}
@@ -5,15 +5,26 @@ import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.TableGenerator;
+import javax.persistence.Version;
 
 @Entity
 @Table(name = "stock_item")
 public class StockItem {
 
+    /**
+     * Ids are handed out in blocks of this size from the stock_item_sequence table, which
+     * keeps Hibernate insert batching possible (IDENTITY columns disable it).
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "stock_item_id")
+    @TableGenerator(name = "stock_item_id", table = "stock_item_sequence", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "stock_item", allocationSize = ID_ALLOCATION_SIZE)
     @Column(name = "id", nullable = false, unique = true)
     private Long id;
 
@@ -26,14 +37,23 @@ public class StockItem {
     @Column(name = "description", length = 1000)
     private String description;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     public StockItem() {
     }
 
     public StockItem(Long id, ItemType type, String title, String description) {
+        this(id, type, title, description, null);
+    }
+
+    public StockItem(Long id, ItemType type, String title, String description, Long version) {
         this.id = id;
         this.type = type;
         this.title = title;
         this.description = description;
+        this.version = version;
     }
 
     public Long getId() {
@@ -51,5 +71,9 @@ public class StockItem {
     public String getDescription() {
         return description;
     }
+
+    public Long getVersion() {
+        return version;
+    }
 }
 
@@ -0,0 +1,79 @@
+package com.github.smatyukevich.app.domain.model;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Read-only projection of a stock item used by the listings. Only the requested fields
+ * are read from the database; the others stay null and are left out of the JSON. The id
+ * and version are always present.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StockItemView {
+
+    public enum Field {
+        ID,
+        TYPE,
+        TITLE,
+        DESCRIPTION;
+
+        public String column() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * Parses a comma separated field list such as "id,type,title". The id is always
+         * included because listings page by it.
+         */
+        public static Set<Field> parse(String fields) {
+            Set<Field> parsed = EnumSet.of(ID);
+            for (String field : fields.split(",")) {
+                if (!field.trim().isEmpty()) {
+                    parsed.add(valueOf(field.trim().toUpperCase(Locale.ROOT)));
+                }
+            }
+            return parsed;
+        }
+    }
+
+    private final Long id;
+
+    private final ItemType type;
+
+    private final String title;
+
+    private final String description;
+
+    private final Long version;
+
+    public StockItemView(Long id, ItemType type, String title, String description, Long version) {
+        this.id = id;
+        this.type = type;
+        this.title = title;
+        this.description = description;
+        this.version = version;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public ItemType getType() {
+        return type;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,8 @@
+CREATE TABLE `stock_item_sequence` (
+  `sequence_name` varchar(64) NOT NULL,
+  `next_val` bigint(20) NOT NULL,
+  PRIMARY KEY (`sequence_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+INSERT INTO `stock_item_sequence` (`sequence_name`, `next_val`)
+SELECT 'stock_item', COALESCE(MAX(`id`), 0) + 50 FROM `stock_item`;
@@ -0,0 +1 @@
+CREATE INDEX `idx_stock_item_type_id` ON `stock_item` (`type`, `id`);
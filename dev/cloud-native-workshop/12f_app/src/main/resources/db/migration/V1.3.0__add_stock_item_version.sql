@@ -0,0 +1 @@
+ALTER TABLE `stock_item` ADD COLUMN `version` bigint(20) NOT NULL DEFAULT 0;
@@ -0,0 +1,107 @@
+package com.github.smatyukevich.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+public class AuthTokenServiceTest {
+
+    private final MutableClock clock = new MutableClock();
+
+    private final AuthTokenService tokens = new AuthTokenService("secret", 300, clock);
+
+    private final Authentication admin = new UsernamePasswordAuthenticationToken("admin", null,
+            AuthorityUtils.createAuthorityList("ROLE_ADMIN", "ROLE_USER"));
+
+    @Test
+    public void issuedTokensAuthenticateWithTheirRoles() {
+        Authentication authentication = tokens.verify(tokens.issue(admin));
+
+        assertNotNull(authentication);
+        assertEquals("admin", authentication.getName());
+        assertEquals(admin.getAuthorities(), authentication.getAuthorities());
+    }
+
+    @Test
+    public void userNamesMayContainTheSeparator() {
+        Authentication user = new UsernamePasswordAuthenticationToken("domain:admin", null,
+                AuthorityUtils.createAuthorityList("ROLE_USER"));
+
+        Authentication authentication = tokens.verify(tokens.issue(user));
+
+        assertNotNull(authentication);
+        assertEquals("domain:admin", authentication.getName());
+        assertEquals(user.getAuthorities(), authentication.getAuthorities());
+    }
+
+    @Test
+    public void tamperedTokensAreRejected() {
+        String token = tokens.issue(admin);
+        String forged = token.substring(0, token.indexOf('.') - 2) + "xx" + token.substring(token.indexOf('.'));
+
+        assertNull(tokens.verify(forged));
+        assertNull(tokens.verify("not a token"));
+        assertNull(new AuthTokenService("other secret", 300, clock).verify(token));
+    }
+
+    @Test
+    public void tokensExpire() {
+        String token = tokens.issue(admin);
+
+        clock.advance(299);
+        assertNotNull(tokens.verify(token));
+        clock.advance(1);
+        assertNull(tokens.verify(token));
+    }
+
+    @Test
+    public void revokedTokensAreRejectedAndForgottenOnceExpired() {
+        String first = tokens.issue(admin);
+        tokens.revoke(first);
+        assertNull(tokens.verify(first));
+        assertNotNull(tokens.verify(tokens.issue(admin)));
+
+        clock.advance(300);
+        tokens.revoke(tokens.issue(admin));
+        assertEquals(1, tokens.revokedCount());
+    }
+
+    private static class MutableClock extends Clock {
+
+        private long millis = 1_500_000_000_000L;
+
+        void advance(long seconds) {
+            millis += seconds * 1000;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
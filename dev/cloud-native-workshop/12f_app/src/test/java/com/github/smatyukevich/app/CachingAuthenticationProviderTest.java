@@ -0,0 +1,103 @@
+package com.github.smatyukevich.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+public class CachingAuthenticationProviderTest {
+
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    private CacheInvalidatingUserDetailsManager users;
+
+    private AuthenticationCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new AuthenticationCache(true, 100, 60);
+        InMemoryUserDetailsManager store = new InMemoryUserDetailsManager(Collections.<UserDetails>singletonList(
+                User.withUsername("user").password("user_pass").roles("USER").build())) {
+            @Override
+            public UserDetails loadUserByUsername(String username) {
+                lookups.incrementAndGet();
+                return super.loadUserByUsername(username);
+            }
+        };
+        users = new CacheInvalidatingUserDetailsManager(store, cache);
+    }
+
+    @Test
+    public void repeatedLoginIsServedFromCache() {
+        CachingAuthenticationProvider provider = provider();
+
+        Authentication first = provider.authenticate(login("user", "user_pass"));
+        Authentication second = provider.authenticate(login("user", "user_pass"));
+
+        assertEquals(1, lookups.get());
+        assertEquals("user", second.getName());
+        assertEquals(first.getAuthorities(), second.getAuthorities());
+        assertNull(second.getCredentials());
+    }
+
+    @Test
+    public void wrongPasswordIsNotAnsweredFromCache() {
+        CachingAuthenticationProvider provider = provider();
+        provider.authenticate(login("user", "user_pass"));
+
+        try {
+            provider.authenticate(login("user", "wrong"));
+            fail("expected bad credentials");
+        } catch (BadCredentialsException e) {
+            assertEquals(2, lookups.get());
+        }
+    }
+
+    @Test
+    public void passwordChangeInvalidatesTheUser() {
+        CachingAuthenticationProvider provider = provider();
+        provider.authenticate(login("user", "user_pass"));
+
+        users.updateUser(User.withUsername("user").password("new_pass").roles("USER").build());
+
+        try {
+            provider.authenticate(login("user", "user_pass"));
+            fail("expected the old password to be rejected");
+        } catch (BadCredentialsException e) {
+            assertEquals("user", provider.authenticate(login("user", "new_pass")).getName());
+        }
+    }
+
+    @Test
+    public void disabledCacheAlwaysChecksThePassword() {
+        cache = new AuthenticationCache(false, 100, 60);
+        CachingAuthenticationProvider provider = provider();
+
+        provider.authenticate(login("user", "user_pass"));
+        provider.authenticate(login("user", "user_pass"));
+
+        assertEquals(2, lookups.get());
+    }
+
+    private CachingAuthenticationProvider provider() {
+        DaoAuthenticationProvider passwords = new DaoAuthenticationProvider();
+        passwords.setUserDetailsService(users);
+        return new CachingAuthenticationProvider(passwords, cache);
+    }
+
+    private static Authentication login(String username, String password) {
+        return new UsernamePasswordAuthenticationToken(username, password);
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.smatyukevich.app;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.cloud.config.client.ConfigClientProperties;
+import org.springframework.core.env.StandardEnvironment;
+
+public class ConfigChangeSubscriberTest {
+
+    private final AtomicInteger refreshes = new AtomicInteger();
+
+    private ConfigChangeSubscriber subscriber = subscriber(null);
+
+    @Test
+    public void firstVersionIsTheCurrentOneWithoutAStartVersion() throws IOException {
+        read("event:change\ndata:v1\n\n");
+
+        assertEquals(0, refreshes.get());
+    }
+
+    @Test
+    public void newVersionRefreshes() throws IOException {
+        read("event:change\ndata:v1\n\n:keep-alive\n\nevent:change\ndata:v2\n\n");
+
+        assertEquals(1, refreshes.get());
+    }
+
+    @Test
+    public void reconnectingToTheSameVersionDoesNotRefresh() throws IOException {
+        read("event:change\ndata:v1\n\n");
+        read("event:change\ndata:v1\n\n:keep-alive\n\n");
+        read("event:change\ndata:v2\n\n");
+
+        assertEquals(1, refreshes.get());
+    }
+
+    @Test
+    public void changeBeforeSubscribingRefreshes() throws IOException {
+        subscriber = subscriber("v1");
+        read("event:change\ndata:v2\n\n");
+
+        assertEquals(1, refreshes.get());
+    }
+
+    @Test
+    public void startVersionDoesNotRefresh() throws IOException {
+        subscriber = subscriber("v1");
+        read("event:change\ndata:v1\n\n");
+
+        assertEquals(0, refreshes.get());
+    }
+
+    @Test
+    public void streamIsForTheFetchedEnvironment() {
+        ConfigClientProperties client = new ConfigClientProperties(new StandardEnvironment());
+        client.setName("stock");
+        client.setProfile("cloud,mysql");
+
+        assertEquals("http://localhost:8888/changes?application=stock&profile=cloud%2Cmysql",
+                ConfigChangeSubscriber.changesUrl("http://localhost:8888/", client));
+        client.setLabel("release");
+        assertEquals("http://localhost:8888/changes?application=stock&profile=cloud%2Cmysql&label=release",
+                ConfigChangeSubscriber.changesUrl("http://localhost:8888", client));
+    }
+
+    private ConfigChangeSubscriber subscriber(String startVersion) {
+        return new ConfigChangeSubscriber("http://localhost:8888/changes", startVersion, 0, refreshes::incrementAndGet);
+    }
+
+    private void read(String stream) throws IOException {
+        subscriber.read(new BufferedReader(new StringReader(stream)));
+    }
+}
@@ -0,0 +1,199 @@
+package com.github.smatyukevich.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.github.smatyukevich.app.domain.model.ItemType;
+import com.github.smatyukevich.app.domain.model.StockItem;
+
+/**
+ * Runs the bulkhead as the application does, as an aspect around the JDBC repository
+ * with transactions on H2, limited to one concurrent call.
+ */
+public class DatabaseBulkheadTest {
+
+    private AnnotationConfigApplicationContext context;
+
+    private DatabaseBulkhead bulkhead;
+
+    private StockItemJdbcRepository repository;
+
+    @Before
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(BulkheadConfig.class);
+        bulkhead = context.getBean(DatabaseBulkhead.class);
+        repository = context.getBean(StockItemJdbcRepository.class);
+        repository.insertAll(Collections.singletonList(new StockItem(null, ItemType.CD, "Abbey Road", null)),
+                repository.reserveIds(1));
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void permitIsTakenBeforeTheTransactionBegins() {
+        RecordingTransactionManager transactionManager = context.getBean(RecordingTransactionManager.class);
+
+        // reserving the ids and inserting the item
+        assertEquals(Arrays.asList(0, 0), transactionManager.availablePermitsOnBegin);
+        assertEquals(1, health("available"));
+    }
+
+    @Test
+    public void callsBeyondTheLimitAreRejectedWith503() throws Exception {
+        CountDownLatch streaming = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> repository.streamAll(item -> {
+            streaming.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        assertTrue(streaming.await(5, TimeUnit.SECONDS));
+
+        try {
+            MockMvc mvc = MockMvcBuilders.standaloneSetup(new CountsController(repository))
+                    .setControllerAdvice(new OverloadExceptionHandler())
+                    .build();
+            mvc.perform(get("/counts"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"));
+            assertEquals(0, health("available"));
+            assertEquals(1L, health("rejected"));
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+
+        assertEquals(Collections.singletonMap(ItemType.CD, 1L), repository.countByType());
+    }
+
+    @Test
+    public void rejectedRequestsAreAnswered503() throws Exception {
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(new RejectingController())
+                .setControllerAdvice(new OverloadExceptionHandler())
+                .build();
+
+        mvc.perform(get("/rejected"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    private Object health(String detail) {
+        return bulkhead.health().getDetails().get(detail);
+    }
+
+    @Configuration
+    @EnableAspectJAutoProxy(proxyTargetClass = true)
+    @EnableTransactionManagement
+    static class BulkheadConfig {
+
+        @Bean
+        DataSource dataSource() {
+            DriverManagerDataSource dataSource =
+                    new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+            Flyway flyway = new Flyway();
+            flyway.setDataSource(dataSource);
+            flyway.migrate();
+            return dataSource;
+        }
+
+        @Bean
+        DatabaseBulkhead databaseBulkhead() {
+            return new DatabaseBulkhead(1, 50);
+        }
+
+        @Bean
+        RecordingTransactionManager transactionManager() {
+            return new RecordingTransactionManager(dataSource(), databaseBulkhead());
+        }
+
+        @Bean
+        StockItemJdbcRepository stockItemJdbcRepository() {
+            return new StockItemJdbcRepository(new JdbcTemplate(dataSource()), transactionManager());
+        }
+    }
+
+    /**
+     * Remembers how many bulkhead permits were left whenever a transaction began.
+     */
+    static class RecordingTransactionManager extends DataSourceTransactionManager {
+
+        private final DatabaseBulkhead bulkhead;
+
+        private final List<Object> availablePermitsOnBegin = new ArrayList<>();
+
+        RecordingTransactionManager(DataSource dataSource, DatabaseBulkhead bulkhead) {
+            super(dataSource);
+            this.bulkhead = bulkhead;
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            availablePermitsOnBegin.add(bulkhead.health().getDetails().get("available"));
+            super.doBegin(transaction, definition);
+        }
+    }
+
+    @RestController
+    static class CountsController {
+
+        private final StockItemJdbcRepository repository;
+
+        CountsController(StockItemJdbcRepository repository) {
+            this.repository = repository;
+        }
+
+        @RequestMapping("/counts")
+        public Map<ItemType, Long> counts() {
+            return repository.countByType();
+        }
+    }
+
+    @RestController
+    static class RejectingController {
+
+        @RequestMapping("/rejected")
+        public String rejected() {
+            throw new RejectedExecutionException("Queue full");
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.smatyukevich.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.types.Expiration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.smatyukevich.app.domain.model.ItemType;
+import com.github.smatyukevich.app.domain.model.StockItem;
+
+public class RedisStockItemSharedTierTest {
+
+    private static final StockItem ITEM = new StockItem(1L, ItemType.CD, "Abbey Road", "The Beatles", 2L);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private StringRedisTemplate redisTemplate;
+
+    private ValueOperations<String, String> values;
+
+    private RedisStockItemSharedTier tier;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        values = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        tier = new RedisStockItemSharedTier(mock(RedisConnectionFactory.class), redisTemplate, objectMapper, 300, 1, 10);
+    }
+
+    @Test
+    public void getReadsTheStoredJson() throws Exception {
+        when(values.get("stock-item:1")).thenReturn(objectMapper.writeValueAsString(ITEM));
+
+        StockItem item = tier.get(1L);
+
+        assertEquals("Abbey Road", item.getTitle());
+        assertEquals(Long.valueOf(2L), item.getVersion());
+        assertNull(tier.get(2L));
+    }
+
+    @Test
+    public void unavailableRedisIsAMiss() {
+        when(values.get(anyString())).thenThrow(new RedisConnectionFailureException("Connection refused"));
+
+        assertNull(tier.get(1L));
+    }
+
+    @Test
+    public void storeOverwritesWithTheTtl() throws Exception {
+        tier.store(ITEM);
+
+        verify(values).set("stock-item:1", objectMapper.writeValueAsString(ITEM), 300, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void storeIfAbsentSetsOnlyMissingKeysWithTheTtl() throws Exception {
+        RedisConnection connection = mock(RedisConnection.class);
+        when(redisTemplate.execute(any(RedisCallback.class))).thenAnswer(
+                invocation -> ((RedisCallback<?>) invocation.getArguments()[0]).doInRedis(connection));
+
+        tier.storeIfAbsent(ITEM);
+
+        ArgumentCaptor<byte[]> value = ArgumentCaptor.forClass(byte[].class);
+        ArgumentCaptor<Expiration> expiration = ArgumentCaptor.forClass(Expiration.class);
+        verify(connection).set(eq("stock-item:1".getBytes(StandardCharsets.UTF_8)), value.capture(),
+                expiration.capture(), eq(SetOption.SET_IF_ABSENT));
+        assertEquals("Abbey Road", objectMapper.readValue(value.getValue(), StockItem.class).getTitle());
+        assertEquals(300, expiration.getValue().getExpirationTimeInSeconds());
+    }
+
+    @Test
+    public void invalidationsOfOtherInstancesReachTheListener() {
+        ArgumentCaptor<String> published = ArgumentCaptor.forClass(String.class);
+        tier.publishInvalidation(1L);
+        verify(redisTemplate).convertAndSend(eq("stock-item-invalidations"), published.capture());
+
+        List<Long> invalidated = new ArrayList<>();
+        MessageListener listener = tier.invalidationListener(invalidated::add);
+        listener.onMessage(message(published.getValue()), null);
+        assertTrue(invalidated.isEmpty());
+
+        listener.onMessage(message("other-instance:7"), null);
+        assertEquals(1, invalidated.size());
+        assertEquals(Long.valueOf(7L), invalidated.get(0));
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage("stock-item-invalidations".getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
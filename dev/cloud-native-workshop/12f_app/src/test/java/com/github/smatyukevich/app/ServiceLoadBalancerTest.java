@@ -0,0 +1,175 @@
+package com.github.smatyukevich.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+
+public class ServiceLoadBalancerTest {
+
+    private final ServiceInstance first = new DefaultServiceInstance("pricing", "10.0.0.1", 8080, false);
+
+    private final ServiceInstance second = new DefaultServiceInstance("pricing", "10.0.0.2", 8080, false);
+
+    private StubRegistry discoveryClient;
+
+    private ServiceRegistrySnapshot registry;
+
+    @Before
+    public void setUp() {
+        discoveryClient = new StubRegistry();
+        discoveryClient.register(first);
+        discoveryClient.register(second);
+        registry = new ServiceRegistrySnapshot(discoveryClient, 60);
+        registry.refresh();
+    }
+
+    @Test
+    public void readsAreServedFromTheSnapshot() {
+        assertEquals(2, registry.instances("PRICING").size());
+        assertEquals(2, registry.instances("pricing").size());
+        assertTrue(registry.instances("shipping").isEmpty());
+        assertEquals(1, discoveryClient.lookups.get());
+    }
+
+    @Test
+    public void refreshOnlyReplacesChangedApplications() {
+        ServiceInstance shipping = new DefaultServiceInstance("shipping", "10.0.0.3", 8080, false);
+        List<ServiceInstance> pricing = registry.instances("pricing");
+
+        discoveryClient.register(shipping);
+        registry.refresh();
+
+        assertSame(pricing, registry.instances("pricing"));
+        assertEquals(1, registry.instances("shipping").size());
+    }
+
+    @Test
+    public void failedRefreshKeepsTheLastSnapshot() {
+        discoveryClient.down = true;
+        registry.refresh();
+
+        assertEquals(2, registry.instances("pricing").size());
+    }
+
+    @Test
+    public void roundRobinTakesEachInstanceInTurn() {
+        ServiceLoadBalancer loadBalancer = new ServiceLoadBalancer(registry, LoadBalancingStrategies.named("round-robin"));
+
+        assertEquals(Arrays.asList(first, second, first, second), Arrays.asList(
+                loadBalancer.choose("pricing"), loadBalancer.choose("pricing"),
+                loadBalancer.choose("pricing"), loadBalancer.choose("pricing")));
+    }
+
+    @Test
+    public void leastOutstandingAvoidsTheBusyInstance() {
+        ServiceLoadBalancer loadBalancer = new ServiceLoadBalancer(registry, LoadBalancingStrategies.named("least-outstanding"));
+
+        ServiceInstance chosen = loadBalancer.execute("pricing", busy -> loadBalancer.choose("pricing"));
+
+        assertEquals(0, loadBalancer.stats(chosen).getOutstanding());
+    }
+
+    @Test
+    public void latencyWeightedPrefersTheFastInstance() {
+        // round-robin for the first two requests, so each instance gets one
+        ServiceLoadBalancer loadBalancer = new ServiceLoadBalancer(registry, new LoadBalancingStrategy() {
+            private final LoadBalancingStrategy warmup = LoadBalancingStrategies.named("round-robin");
+            private final AtomicInteger requests = new AtomicInteger();
+
+            @Override
+            public ServiceInstance choose(List<ServiceInstance> instances, Function<ServiceInstance, ServiceInstanceStats> stats) {
+                return (requests.getAndIncrement() < 2 ? warmup : LoadBalancingStrategies.named("latency-weighted"))
+                        .choose(instances, stats);
+            }
+        });
+        loadBalancer.execute("pricing", instance -> null);
+        loadBalancer.execute("pricing", instance -> sleep(50));
+
+        int fast = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (loadBalancer.choose("pricing") == first) {
+                fast++;
+            }
+        }
+        assertTrue("fast instance chosen " + fast + " times", fast > 900);
+    }
+
+    @Test
+    public void statsOfDeregisteredInstancesAreDropped() {
+        ServiceLoadBalancer loadBalancer = new ServiceLoadBalancer(registry, LoadBalancingStrategies.named("round-robin"));
+        loadBalancer.execute("pricing", instance -> null);
+        loadBalancer.execute("pricing", instance -> null);
+
+        discoveryClient.deregister(second);
+        registry.refresh();
+
+        assertEquals(0, loadBalancer.stats(second).getAverageNanos(), 0);
+        assertEquals(first, loadBalancer.choose("pricing"));
+        assertNull(loadBalancer.choose("shipping"));
+    }
+
+    private static Object sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private static class StubRegistry implements DiscoveryClient {
+
+        private final Map<String, List<ServiceInstance>> instances = new HashMap<>();
+
+        private final AtomicInteger lookups = new AtomicInteger();
+
+        private volatile boolean down;
+
+        void register(ServiceInstance instance) {
+            instances.computeIfAbsent(instance.getServiceId(), id -> new ArrayList<>()).add(instance);
+        }
+
+        void deregister(ServiceInstance instance) {
+            instances.get(instance.getServiceId()).remove(instance);
+        }
+
+        @Override
+        public String description() {
+            return "stub registry";
+        }
+
+        @Override
+        public ServiceInstance getLocalServiceInstance() {
+            return null;
+        }
+
+        @Override
+        public List<ServiceInstance> getInstances(String serviceId) {
+            lookups.incrementAndGet();
+            return new ArrayList<>(instances.getOrDefault(serviceId, new ArrayList<>()));
+        }
+
+        @Override
+        public List<String> getServices() {
+            if (down) {
+                throw new IllegalStateException("registry unreachable");
+            }
+            return new ArrayList<>(instances.keySet());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.smatyukevich.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class StockAsyncConfigTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private ThreadPoolTaskExecutor executor;
+
+    @Before
+    public void setUp() {
+        StockAsyncConfig config = new StockAsyncConfig();
+        ReflectionTestUtils.setField(config, "poolSize", 2);
+        ReflectionTestUtils.setField(config, "queueCapacity", 1);
+        executor = config.stockRequestExecutor();
+        executor.initialize();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void poolIsFixedAndQueueBounded() {
+        assertEquals(2, executor.getCorePoolSize());
+        assertEquals(2, executor.getMaxPoolSize());
+        assertEquals(1, executor.getThreadPoolExecutor().getQueue().remainingCapacity());
+    }
+
+    @Test
+    public void tasksBeyondPoolAndQueueAreRejected() throws Exception {
+        CountDownLatch running = new CountDownLatch(2);
+        Future<String> first = executor.submit(() -> block(running));
+        executor.submit(() -> block(running));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        executor.submit(() -> "queued");
+
+        try {
+            executor.submit(() -> "rejected");
+            throw new AssertionError("Expected the task to be rejected");
+        } catch (RejectedExecutionException e) {
+            // the handler turns this into 503
+        }
+
+        release.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS).startsWith("stock-"));
+    }
+
+    private String block(CountDownLatch running) throws InterruptedException {
+        running.countDown();
+        release.await(5, TimeUnit.SECONDS);
+        return Thread.currentThread().getName();
+    }
+}
@@ -0,0 +1,229 @@
+package com.github.smatyukevich.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.smatyukevich.app.StockBatchResult.Status;
+import com.github.smatyukevich.app.domain.model.ItemType;
+import com.github.smatyukevich.app.domain.model.StockItem;
+
+public class StockBatchResourceTest {
+
+    /**
+     * Titles longer than the column fail their chunk.
+     */
+    private static final int MAX_TITLE_LENGTH = 45;
+
+    private final Map<Long, StockItem> database = new ConcurrentHashMap<>();
+
+    private final StockBatchResource resource = new StockBatchResource();
+
+    private final StockItemSearchIndex searchIndex = new StockItemSearchIndex();
+
+    @Before
+    public void setUp() {
+        database.put(1L, new StockItem(1L, ItemType.CD, "Abbey Road", "The Beatles", 0L));
+
+        ReflectionTestUtils.setField(resource, "stockItemJdbcRepository", new InMemoryJdbcRepository());
+        ReflectionTestUtils.setField(resource, "stockItemCache", new StockItemCache(true, 100, 60, (StockItemSharedTier) null));
+        ReflectionTestUtils.setField(resource, "stockItemSearchIndex", searchIndex);
+        ReflectionTestUtils.setField(resource, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(resource, "chunkSize", 2);
+    }
+
+    @Test
+    public void everyItemGetsAResultInRequestOrder() throws Exception {
+        List<StockBatchResult> results = insert(
+                "{\"type\":\"CD\",\"title\":\"Let It Be\"}\n"
+                        + "{\"title\":\"No type\"}\n"
+                        + "{\"type\":\"CD\",\"title\":\"Revolver\"}\n");
+
+        assertEquals(3, results.size());
+        assertResult(results.get(0), 0, Status.CREATED);
+        assertResult(results.get(1), 1, Status.INVALID);
+        assertResult(results.get(2), 2, Status.CREATED);
+        assertEquals(3, database.size());
+        assertEquals(1, searchIndex.search("revolver", 10).size());
+    }
+
+    @Test
+    public void failedChunksAreReportedAndLaterChunksStillWritten() throws Exception {
+        String tooLong = new String(new char[MAX_TITLE_LENGTH + 1]).replace('\0', 'x');
+        List<StockBatchResult> results = insert("["
+                + "{\"type\":\"CD\",\"title\":\"Let It Be\"},"
+                + "{\"type\":\"CD\",\"title\":\"Revolver\"},"
+                + "{\"type\":\"CD\",\"title\":\"Help\"},"
+                + "{\"type\":\"CD\",\"title\":\"" + tooLong + "\"},"
+                + "{\"type\":\"CD\",\"title\":\"Rubber Soul\"}]");
+
+        assertResult(results.get(0), 0, Status.CREATED);
+        assertResult(results.get(1), 1, Status.CREATED);
+        assertResult(results.get(2), 2, Status.FAILED);
+        assertResult(results.get(3), 3, Status.FAILED);
+        assertResult(results.get(4), 4, Status.CREATED);
+        assertNull(results.get(2).getId());
+        assertEquals(4, database.size());
+        assertTrue(searchIndex.search("help", 10).isEmpty());
+    }
+
+    @Test
+    public void unreadableItemsAreInvalidAndTheRestStillWritten() throws Exception {
+        List<StockBatchResult> results = insert(
+                "{\"type\":\"CD\",\"title\":\"Let It Be\"}\n"
+                        + "{\"type\":\"CD\",\"title\":\"Revolver\"}\n"
+                        + "{\"type\":\"VINYL\",\"title\":\"Help\"}\n"
+                        + "{\"type\":\"CD\",\"title\":\"Rubber Soul\"}\n");
+
+        assertEquals(4, results.size());
+        assertResult(results.get(2), 2, Status.INVALID);
+        assertResult(results.get(3), 3, Status.CREATED);
+        assertEquals(4, database.size());
+    }
+
+    @Test
+    public void malformedBodyEndsTheBatchAfterTheCommittedChunks() throws Exception {
+        List<StockBatchResult> results = insert(
+                "{\"type\":\"CD\",\"title\":\"Let It Be\"}\n"
+                        + "{\"type\":\"CD\",\"title\":\"Revolver\"}\n"
+                        + "{\"type\":\"CD\",\"title\":\"Help\"}\n"
+                        + "{\"type\":\"CD\",\"title\":\"Rubber Soul\"\n"
+                        + "{\"type\":\"CD\",\"title\":\"Abbey Road\"}\n");
+
+        assertEquals(4, results.size());
+        assertResult(results.get(0), 0, Status.CREATED);
+        assertResult(results.get(1), 1, Status.CREATED);
+        assertResult(results.get(2), 2, Status.CREATED);
+        assertResult(results.get(3), 3, Status.INVALID);
+        assertEquals(4, database.size());
+    }
+
+    @Test
+    public void updatesOfMissingItemsAreNotFound() throws Exception {
+        List<StockBatchResult> results = update("["
+                + "{\"id\":1,\"type\":\"CD\",\"title\":\"Let It Be\",\"version\":0},"
+                + "{\"id\":2,\"type\":\"CD\",\"title\":\"Revolver\",\"version\":0}]");
+
+        assertResult(results.get(0), 0, Status.UPDATED);
+        assertResult(results.get(1), 1, Status.NOT_FOUND);
+        assertEquals("Let It Be", database.get(1L).getTitle());
+        assertEquals(Long.valueOf(1L), database.get(1L).getVersion());
+    }
+
+    @Test
+    public void updatesOfStaleVersionsConflict() throws Exception {
+        List<StockBatchResult> results = update("["
+                + "{\"id\":1,\"type\":\"CD\",\"title\":\"Let It Be\",\"version\":0},"
+                + "{\"id\":1,\"type\":\"CD\",\"title\":\"Revolver\",\"version\":0}]");
+
+        assertResult(results.get(0), 0, Status.UPDATED);
+        assertResult(results.get(1), 1, Status.CONFLICT);
+        assertEquals("Let It Be", database.get(1L).getTitle());
+    }
+
+    @Test
+    public void updatesWithoutVersionAreInvalid() throws Exception {
+        List<StockBatchResult> results = update("{\"id\":1,\"type\":\"CD\",\"title\":\"Let It Be\"}");
+
+        assertResult(results.get(0), 0, Status.INVALID);
+        assertEquals("Abbey Road", database.get(1L).getTitle());
+    }
+
+    private List<StockBatchResult> insert(String body) throws Exception {
+        return resource.storeInStock(request(body)).call();
+    }
+
+    private List<StockBatchResult> update(String body) throws Exception {
+        return resource.update(request(body)).call();
+    }
+
+    private static MockHttpServletRequest request(String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private static void assertResult(StockBatchResult result, int index, Status status) {
+        assertEquals(index, result.getIndex());
+        assertEquals(status, result.getStatus());
+    }
+
+    /**
+     * Batched writes against the in-memory database, all or nothing per call like the
+     * transactional repository.
+     */
+    private class InMemoryJdbcRepository extends StockItemJdbcRepository {
+
+        private final AtomicLong nextId = new AtomicLong(100);
+
+        InMemoryJdbcRepository() {
+            super(null, null);
+        }
+
+        @Override
+        public long reserveIds(int count) {
+            return nextId.getAndAdd(count);
+        }
+
+        @Override
+        public List<StockItem> insertAll(List<StockItem> items, long firstId) {
+            checkTitles(items);
+            List<StockItem> storedItems = new ArrayList<>(items.size());
+            for (StockItem item : items) {
+                StockItem stored = new StockItem(firstId + storedItems.size(), item.getType(), item.getTitle(),
+                        item.getDescription(), 0L);
+                database.put(stored.getId(), stored);
+                storedItems.add(stored);
+            }
+            return storedItems;
+        }
+
+        @Override
+        public int[] updateAll(List<StockItem> items) {
+            checkTitles(items);
+            int[] counts = new int[items.size()];
+            for (int i = 0; i < items.size(); i++) {
+                StockItem item = items.get(i);
+                StockItem stored = database.get(item.getId());
+                if (stored != null && stored.getVersion().equals(item.getVersion())) {
+                    database.put(item.getId(), new StockItem(item.getId(), item.getType(), item.getTitle(),
+                            item.getDescription(), item.getVersion() + 1));
+                    counts[i] = Statement.SUCCESS_NO_INFO;
+                }
+            }
+            return counts;
+        }
+
+        @Override
+        public Set<Long> findExistingIds(List<Long> ids) {
+            Set<Long> existing = new HashSet<>(ids);
+            existing.retainAll(database.keySet());
+            return existing;
+        }
+
+        private void checkTitles(List<StockItem> items) {
+            for (StockItem item : items) {
+                if (item.getTitle().length() > MAX_TITLE_LENGTH) {
+                    throw new DataIntegrityViolationException("Data too long for column 'title'");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.github.smatyukevich.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.smatyukevich.app.domain.model.ItemType;
+import com.github.smatyukevich.app.domain.model.StockItem;
+
+public class StockItemCacheTest {
+
+    private final Map<Long, StockItem> database = new ConcurrentHashMap<>();
+
+    private final AtomicInteger databaseReads = new AtomicInteger();
+
+    private final Function<Long, StockItem> loader = id -> {
+        databaseReads.incrementAndGet();
+        return database.get(id);
+    };
+
+    private FakeRedis redis;
+
+    private StockItemCache first;
+
+    private StockItemCache second;
+
+    @Before
+    public void setUp() {
+        redis = new FakeRedis();
+        first = new StockItemCache(true, 100, 60, redis.connect("first"));
+        second = new StockItemCache(true, 100, 60, redis.connect("second"));
+        database.put(1L, new StockItem(1L, ItemType.CD, "Abbey Road", "The Beatles"));
+    }
+
+    @Test
+    public void secondInstanceIsServedFromSharedTier() {
+        assertEquals("Abbey Road", first.get(1L, loader).getTitle());
+        assertEquals("Abbey Road", second.get(1L, loader).getTitle());
+
+        assertEquals(1, databaseReads.get());
+    }
+
+    @Test
+    public void writeInvalidatesOtherInstances() {
+        first.get(1L, loader);
+        second.get(1L, loader);
+
+        StockItem updated = new StockItem(1L, ItemType.CD, "Let It Be", "The Beatles");
+        database.put(1L, updated);
+        first.put(updated);
+
+        assertEquals("Let It Be", second.get(1L, loader).getTitle());
+        assertEquals(1, databaseReads.get());
+    }
+
+    @Test
+    public void evictRemovesItemEverywhere() {
+        first.get(1L, loader);
+        second.get(1L, loader);
+
+        database.remove(1L);
+        second.evict(1L);
+
+        assertNull(first.get(1L, loader));
+        assertNull(second.get(1L, loader));
+    }
+
+    @Test
+    public void fillDoesNotOverwriteANewerWrite() {
+        StockItem updated = new StockItem(1L, ItemType.CD, "Let It Be", "The Beatles");
+        first.get(1L, id -> {
+            StockItem read = database.get(id);
+            // another instance writes between this read and the fill
+            database.put(1L, updated);
+            redis.values.put(1L, updated);
+            return read;
+        });
+
+        assertEquals("Let It Be", redis.values.get(1L).getTitle());
+        assertEquals("Let It Be", second.get(1L, loader).getTitle());
+    }
+
+    @Test
+    public void disabledCacheAlwaysLoads() {
+        StockItemCache disabled = new StockItemCache(false, 100, 60, redis.connect("disabled"));
+
+        disabled.get(1L, loader);
+        disabled.get(1L, loader);
+
+        assertEquals(2, databaseReads.get());
+    }
+
+    /**
+     * Stand-in for the Redis server: one key space and one pub/sub channel shared by all
+     * connected instances.
+     */
+    private static class FakeRedis {
+
+        private final Map<Long, StockItem> values = new ConcurrentHashMap<>();
+
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+        StockItemSharedTier connect(final String instance) {
+            return new StockItemSharedTier() {
+                @Override
+                public StockItem get(Long id) {
+                    return values.get(id);
+                }
+
+                @Override
+                public void store(StockItem item) {
+                    values.put(item.getId(), item);
+                }
+
+                @Override
+                public void storeIfAbsent(StockItem item) {
+                    values.putIfAbsent(item.getId(), item);
+                }
+
+                @Override
+                public void remove(Long id) {
+                    values.remove(id);
+                }
+
+                @Override
+                public void publishInvalidation(Long id) {
+                    for (Subscriber subscriber : subscribers) {
+                        if (!subscriber.instance.equals(instance)) {
+                            subscriber.listener.accept(id);
+                        }
+                    }
+                }
+
+                @Override
+                public void subscribe(Consumer<Long> listener) {
+                    subscribers.add(new Subscriber(instance, listener));
+                }
+            };
+        }
+    }
+
+    private static class Subscriber {
+
+        private final String instance;
+
+        private final Consumer<Long> listener;
+
+        Subscriber(String instance, Consumer<Long> listener) {
+            this.instance = instance;
+            this.listener = listener;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.smatyukevich.app;
+
+import static com.github.smatyukevich.app.domain.model.StockItem.ID_ALLOCATION_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.flywaydb.core.Flyway;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.github.smatyukevich.app.domain.model.ItemType;
+import com.github.smatyukevich.app.domain.model.StockItem;
+
+/**
+ * Runs the repository's SQL on H2 in MySQL mode, migrated by the app's Flyway scripts.
+ */
+public class StockItemJdbcRepositoryTest {
+
+    private StockItemJdbcRepository repository;
+
+    @Before
+    public void setUp() {
+        DriverManagerDataSource dataSource =
+                new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        Flyway flyway = new Flyway();
+        flyway.setDataSource(dataSource);
+        flyway.migrate();
+        repository = new StockItemJdbcRepository(new JdbcTemplate(dataSource), new DataSourceTransactionManager(dataSource));
+    }
+
+    @Test
+    public void reservedRangesDoNotOverlap() {
+        long first = repository.reserveIds(3);
+        long second = repository.reserveIds(ID_ALLOCATION_SIZE + 1);
+        long third = repository.reserveIds(1);
+
+        assertEquals(1, first);
+        assertEquals(first + ID_ALLOCATION_SIZE, second);
+        assertEquals(second + 2 * ID_ALLOCATION_SIZE, third);
+    }
+
+    @Test
+    public void insertsUseTheReservedIds() {
+        long firstId = repository.reserveIds(2);
+        List<StockItem> stored = repository.insertAll(Arrays.asList(
+                new StockItem(null, ItemType.CD, "Abbey Road", "The Beatles"),
+                new StockItem(null, ItemType.ELECTRONICS, "Radio", null)), firstId);
+
+        assertEquals(Long.valueOf(firstId), stored.get(0).getId());
+        assertEquals(Long.valueOf(firstId + 1), stored.get(1).getId());
+        assertEquals(stored.get(1).getTitle(), all().get(1).getTitle());
+        assertEquals(Long.valueOf(0L), all().get(1).getVersion());
+    }
+
+    @Test
+    public void batchUpdatesOnlyApplyToTheCarriedVersion() {
+        long id = insert("Abbey Road");
+
+        int[] counts = repository.updateAll(Arrays.asList(
+                new StockItem(id, ItemType.CD, "Let It Be", null, 0L),
+                new StockItem(id, ItemType.CD, "Revolver", null, 0L),
+                new StockItem(id + 1, ItemType.CD, "Help", null, 0L)));
+
+        assertEquals(1, counts[0]);
+        assertEquals(0, counts[1]);
+        assertEquals(0, counts[2]);
+        assertEquals("Let It Be", all().get(0).getTitle());
+        assertEquals(Long.valueOf(1L), all().get(0).getVersion());
+        assertEquals(Collections.singleton(id), repository.findExistingIds(Arrays.asList(id, id + 1)));
+        assertTrue(repository.findExistingIds(Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void singleWritesCheckTheExpectedVersion() {
+        long id = insert("Abbey Road");
+
+        assertNull(repository.update(new StockItem(id, ItemType.CD, "Let It Be", null), 1L));
+        assertEquals(Long.valueOf(1L), repository.update(new StockItem(id, ItemType.CD, "Let It Be", null), 0L));
+        assertFalse(repository.delete(id, 0L));
+        assertTrue(repository.delete(id, 1L));
+        assertTrue(all().isEmpty());
+    }
+
+    @Test
+    public void countsByType() {
+        insert("Abbey Road");
+        insert("Let It Be");
+
+        assertEquals(Collections.singletonMap(ItemType.CD, 2L), repository.countByType());
+    }
+
+    private long insert(String title) {
+        return repository.insertAll(Collections.singletonList(new StockItem(null, ItemType.CD, title, null)),
+                repository.reserveIds(1)).get(0).getId();
+    }
+
+    private List<StockItem> all() {
+        List<StockItem> items = new ArrayList<>();
+        repository.streamAll(items::add);
+        return items;
+    }
+}
@@ -0,0 +1,195 @@
+package com.github.smatyukevich.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.smatyukevich.app.domain.model.ItemType;
+import com.github.smatyukevich.app.domain.model.StockItem;
+
+public class StockItemSearchIndexTest {
+
+    private StockItemSearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new StockItemSearchIndex();
+        index.index(new StockItem(1L, ItemType.ELECTRONICS, "Portable radio", "Battery powered FM radio"));
+        index.index(new StockItem(2L, ItemType.CD, "Radio Songs", "Compilation of radio hits"));
+        index.index(new StockItem(3L, ItemType.ELECTRONICS, "Battery pack", "Spare pack for the portable radio"));
+    }
+
+    @Test
+    public void allTermsMustMatch() {
+        assertEquals(Arrays.asList(1L, 3L), sorted(index.search("portable battery ", 10)));
+        assertTrue(index.search("portable songs ", 10).isEmpty());
+    }
+
+    @Test
+    public void lastTermMatchesAsPrefix() {
+        assertEquals(Arrays.asList(2L), index.search("radio compil", 10));
+        assertTrue(index.search("radio compil ", 10).isEmpty());
+    }
+
+    @Test
+    public void titleMatchesRankFirst() {
+        assertEquals(Arrays.asList(3L, 1L), index.search("battery", 10));
+    }
+
+    @Test
+    public void resultsAreLimited() {
+        assertEquals(2, index.search("radio", 2).size());
+    }
+
+    @Test
+    public void reindexingReplacesOldTerms() {
+        index.index(new StockItem(2L, ItemType.CD, "Greatest Hits", "No more wireless"));
+
+        assertEquals(Arrays.asList(1L, 3L), index.search("radio ", 10));
+        assertEquals(Arrays.asList(2L), index.search("wireless", 10));
+    }
+
+    @Test
+    public void removedItemsAreNotFound() {
+        index.remove(1L);
+
+        assertEquals(Arrays.asList(3L), index.search("portable ", 10));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void itemsIndexedOutOfOrderAreFound() {
+        index.index(new StockItem(0L, ItemType.ELECTRONICS, "Radio alarm", "Portable clock radio"));
+        index.remove(2L);
+        index.index(new StockItem(2L, ItemType.ELECTRONICS, "Portable radiator", "Portable heater"));
+
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L), sorted(index.search("portable radi", 10)));
+        assertEquals(Arrays.asList(0L, 1L, 3L), sorted(index.search("portable radio ", 10)));
+    }
+
+    @Test
+    public void prefixesMatchAllTheirExpansions() {
+        StockItemSearchIndex large = new StockItemSearchIndex();
+        for (long id = 1; id <= 100; id++) {
+            large.index(new StockItem(id, ItemType.CD, "Track" + id, "Compilation"));
+        }
+        large.index(new StockItem(101L, ItemType.CD, "Compilation", "Tracklist inside"));
+
+        List<Long> ids = large.search("compilation track", 200);
+        assertEquals(101, ids.size());
+        assertEquals(Long.valueOf(101L), ids.get(ids.size() - 1));
+        assertEquals(Arrays.asList(77L), large.search("track77", 10));
+    }
+
+    @Test
+    public void disabledIndexStaysEmpty() {
+        StockItemSearchIndex disabled = new StockItemSearchIndex(false, null, new FakeSharedTier(), 3600);
+        disabled.index(new StockItem(1L, ItemType.CD, "Abbey Road", "The Beatles"));
+
+        assertTrue(disabled.search("abbey", 10).isEmpty());
+        assertEquals(0, disabled.size());
+    }
+
+    @Test
+    public void invalidatedItemsAreTakenFromTheSharedTier() {
+        FakeSharedTier tier = new FakeSharedTier();
+        Map<Long, StockItem> database = new HashMap<>();
+        StockItemSearchIndex shared = new StockItemSearchIndex(true, repository(database, new AtomicInteger()), tier, 3600);
+        tier.items.put(1L, new StockItem(1L, ItemType.CD, "Abbey Road", "The Beatles"));
+
+        tier.listener.accept(1L);
+
+        assertEquals(Arrays.asList(1L), shared.search("abbey", 10));
+        shared.destroy();
+    }
+
+    @Test
+    public void failedRefreshesAreRetried() {
+        FakeSharedTier tier = new FakeSharedTier();
+        Map<Long, StockItem> database = new HashMap<>();
+        AtomicInteger refusals = new AtomicInteger(1);
+        StockItemSearchIndex shared = new StockItemSearchIndex(true, repository(database, refusals), tier, 3600);
+        database.put(1L, new StockItem(1L, ItemType.CD, "Abbey Road", "The Beatles"));
+
+        tier.listener.accept(1L);
+        assertTrue(shared.search("abbey", 10).isEmpty());
+
+        shared.retryStale();
+        assertEquals(Arrays.asList(1L), shared.search("abbey", 10));
+
+        database.remove(1L);
+        tier.listener.accept(1L);
+        assertTrue(shared.search("abbey", 10).isEmpty());
+        shared.destroy();
+    }
+
+    /**
+     * Repository that refuses the first {@code refusals} reads like a saturated bulkhead.
+     */
+    private static StockItemRepository repository(Map<Long, StockItem> database, AtomicInteger refusals) {
+        return (StockItemRepository) Proxy.newProxyInstance(StockItemSearchIndexTest.class.getClassLoader(),
+                new Class<?>[]{StockItemRepository.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("findOne")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    if (refusals.getAndDecrement() > 0) {
+                        throw new DatabaseOverloadedException("No database permit");
+                    }
+                    return database.get(args[0]);
+                });
+    }
+
+    private static class FakeSharedTier implements StockItemSharedTier {
+
+        private final Map<Long, StockItem> items = new HashMap<>();
+
+        private Consumer<Long> listener;
+
+        @Override
+        public StockItem get(Long id) {
+            return items.get(id);
+        }
+
+        @Override
+        public void store(StockItem item) {
+            items.put(item.getId(), item);
+        }
+
+        @Override
+        public void storeIfAbsent(StockItem item) {
+            items.putIfAbsent(item.getId(), item);
+        }
+
+        @Override
+        public void remove(Long id) {
+            items.remove(id);
+        }
+
+        @Override
+        public void publishInvalidation(Long id) {
+        }
+
+        @Override
+        public void subscribe(Consumer<Long> listener) {
+            this.listener = listener;
+        }
+    }
+
+    private static List<Long> sorted(List<Long> ids) {
+        List<Long> copy = new ArrayList<>(ids);
+        Collections.sort(copy);
+        return copy;
+    }
+}
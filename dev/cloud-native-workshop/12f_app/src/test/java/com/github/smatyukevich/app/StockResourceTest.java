@@ -0,0 +1,206 @@
+package com.github.smatyukevich.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.github.smatyukevich.app.domain.model.ItemType;
+import com.github.smatyukevich.app.domain.model.StockItem;
+import com.github.smatyukevich.app.domain.model.StockItemView;
+import com.github.smatyukevich.app.domain.model.StockItemView.Field;
+
+public class StockResourceTest {
+
+    private final Map<Long, StockItem> database = new ConcurrentHashMap<>();
+
+    private final StockResource resource = new StockResource();
+
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @Before
+    public void setUp() {
+        database.put(1L, new StockItem(1L, ItemType.CD, "Abbey Road", "The Beatles", 3L));
+
+        StockItemRepository repository = (StockItemRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{StockItemRepository.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "findOne":
+                            return database.get(args[0]);
+                        case "exists":
+                            return database.containsKey(args[0]);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        ReflectionTestUtils.setField(resource, "stockItemRepository", repository);
+        ReflectionTestUtils.setField(resource, "stockItemJdbcRepository", new InMemoryJdbcRepository());
+        ReflectionTestUtils.setField(resource, "stockItemCache", new StockItemCache(false, 100, 60, (StockItemSharedTier) null));
+        ReflectionTestUtils.setField(resource, "stockItemSearchIndex", new StockItemSearchIndex());
+        ReflectionTestUtils.setField(resource, "maxPageLimit", 100);
+    }
+
+    @Test
+    public void getAnswersWithTheVersionAsEtag() throws Exception {
+        StockItem item = get(1L, null);
+
+        assertEquals("Abbey Road", item.getTitle());
+        assertEquals("\"3\"", response.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    public void getOfAnUnchangedItemIsNotModified() throws Exception {
+        assertNull(get(1L, "\"3\""));
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+    }
+
+    @Test
+    public void getOfAMissingItemIsNotFound() throws Exception {
+        assertNull(get(2L, null));
+        assertEquals(HttpStatus.NOT_FOUND.value(), response.getStatus());
+    }
+
+    @Test
+    public void updateWithTheCurrentVersionBumpsIt() throws Exception {
+        StockItem updated = resource.update(new StockItem(1L, ItemType.CD, "Let It Be", "The Beatles"), "\"3\"", response).call();
+
+        assertEquals(Long.valueOf(4L), updated.getVersion());
+        assertEquals("\"4\"", response.getHeader(HttpHeaders.ETAG));
+        assertEquals("Let It Be", database.get(1L).getTitle());
+    }
+
+    @Test
+    public void updateWithoutIfMatchIsRefused() throws Exception {
+        resource.update(new StockItem(1L, ItemType.CD, "Let It Be", "The Beatles"), null, response).call();
+
+        assertEquals(HttpStatus.PRECONDITION_REQUIRED.value(), response.getStatus());
+        assertEquals("Abbey Road", database.get(1L).getTitle());
+    }
+
+    @Test
+    public void updateWithAStaleVersionFails() throws Exception {
+        resource.update(new StockItem(1L, ItemType.CD, "Let It Be", "The Beatles"), "\"2\"", response).call();
+
+        assertEquals(HttpStatus.PRECONDITION_FAILED.value(), response.getStatus());
+        assertEquals("Abbey Road", database.get(1L).getTitle());
+    }
+
+    @Test
+    public void updateOfAMissingItemIsNotFound() throws Exception {
+        resource.update(new StockItem(2L, ItemType.CD, "Let It Be", "The Beatles"), "\"3\"", response).call();
+
+        assertEquals(HttpStatus.NOT_FOUND.value(), response.getStatus());
+    }
+
+    @Test
+    public void deleteNeedsTheCurrentVersion() throws Exception {
+        resource.removeFromStock(1L, null, response).call();
+        assertEquals(HttpStatus.PRECONDITION_REQUIRED.value(), response.getStatus());
+
+        MockHttpServletResponse stale = new MockHttpServletResponse();
+        resource.removeFromStock(1L, "\"2\"", stale).call();
+        assertEquals(HttpStatus.PRECONDITION_FAILED.value(), stale.getStatus());
+        assertTrue(database.containsKey(1L));
+
+        MockHttpServletResponse current = new MockHttpServletResponse();
+        resource.removeFromStock(1L, "\"3\"", current).call();
+        assertEquals(HttpStatus.OK.value(), current.getStatus());
+        assertTrue(database.isEmpty());
+    }
+
+    @Test
+    public void deleteOfAMissingItemIsNotFound() throws Exception {
+        resource.removeFromStock(2L, "*", response).call();
+
+        assertEquals(HttpStatus.NOT_FOUND.value(), response.getStatus());
+    }
+
+    @Test
+    public void searchIsNotFoundWhenTheIndexIsOff() throws Exception {
+        ReflectionTestUtils.setField(resource, "stockItemSearchIndex", new StockItemSearchIndex(false, null, null, 0));
+
+        assertNull(resource.search("abbey", 10, response).call());
+        assertEquals(HttpStatus.NOT_FOUND.value(), response.getStatus());
+    }
+
+    @Test
+    public void nextPageLinkIsEncoded() throws Exception {
+        database.put(2L, new StockItem(2L, ItemType.CD, "Let It Be", "The Beatles", 0L));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/stock");
+
+        List<StockItemView> page = resource.items(ItemType.CD, 0L, 1, "id, title", new ServletWebRequest(request, response),
+                response).call();
+
+        assertEquals(1, page.size());
+        assertEquals("</stock?type=CD&after=1&limit=1&fields=id,%20title>; rel=\"next\"", response.getHeader("Link"));
+    }
+
+    private StockItem get(Long id, String ifNoneMatch) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/stock/" + id);
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return resource.stockItem(id, new ServletWebRequest(request, response), response).call();
+    }
+
+    /**
+     * Versioned updates and deletes against the in-memory database.
+     */
+    private class InMemoryJdbcRepository extends StockItemJdbcRepository {
+
+        InMemoryJdbcRepository() {
+            super(null, null);
+        }
+
+        @Override
+        public Long update(StockItem item, Long expectedVersion) {
+            StockItem stored = database.get(item.getId());
+            if (stored == null || expectedVersion != null && !expectedVersion.equals(stored.getVersion())) {
+                return null;
+            }
+            long version = stored.getVersion() + 1;
+            database.put(item.getId(), new StockItem(item.getId(), item.getType(), item.getTitle(),
+                    item.getDescription(), version));
+            return version;
+        }
+
+        @Override
+        public List<StockItemView> findPage(ItemType type, long after, int limit, Set<Field> fields) {
+            List<StockItemView> page = new ArrayList<>();
+            new TreeMap<>(database).tailMap(after, false).values().stream()
+                    .filter(item -> type == null || type == item.getType())
+                    .limit(limit)
+                    .forEach(item -> page.add(new StockItemView(item.getId(),
+                            fields.contains(Field.TYPE) ? item.getType() : null,
+                            fields.contains(Field.TITLE) ? item.getTitle() : null,
+                            fields.contains(Field.DESCRIPTION) ? item.getDescription() : null,
+                            item.getVersion())));
+            return page;
+        }
+
+        @Override
+        public boolean delete(Long id, Long expectedVersion) {
+            StockItem stored = database.get(id);
+            if (stored == null || expectedVersion != null && !expectedVersion.equals(stored.getVersion())) {
+                return false;
+            }
+            return database.remove(id, stored);
+        }
+    }
+}
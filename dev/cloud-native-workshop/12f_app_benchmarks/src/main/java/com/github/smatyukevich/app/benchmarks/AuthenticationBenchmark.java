@@ -0,0 +1,79 @@
+package com.github.smatyukevich.app.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.Filter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Requests to /secured/user with HTTP Basic credentials through the application's security filter
+ * chain, with and without the authentication cache. Each request comes without a session, as from a
+ * client that doesn't keep cookies, so every one of them is authenticated. The chain ends in a mock,
+ * so MVC dispatch is not part of the numbers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class AuthenticationBenchmark {
+
+    @Param({"false", "true"})
+    public boolean cache;
+
+    private ConfigurableApplicationContext context;
+
+    private Filter securityFilterChain;
+
+    private String authorization;
+
+    @Setup(Level.Trial)
+    public void start() {
+        Map<String, Object> properties = BenchmarkApplication.properties();
+        properties.put("auth.cache.enabled", cache);
+        context = new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(false)
+                .properties(properties)
+                .run();
+        securityFilterChain = context.getBean("springSecurityFilterChain", Filter.class);
+        authorization = "Basic " + Base64.getEncoder().encodeToString("user:user_pass".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public int securedUser() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/secured/user");
+        request.addHeader("Authorization", authorization);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        securityFilterChain.doFilter(request, response, new MockFilterChain());
+        return response.getStatus();
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.smatyukevich.app.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import com.github.smatyukevich.app.StockResource;
+import com.github.smatyukevich.app.StockSpringBootStarter;
+import com.github.smatyukevich.app.domain.model.StockItem;
+
+/**
+ * The 12f_app beans on an in-memory H2 database in MySQL mode, migrated by the app's own
+ * Flyway scripts. Redis, the config server and Eureka are switched off; the rest of the
+ * wiring (cache, bulkhead, repositories) is the production one.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@EnableJpaRepositories(basePackageClasses = StockResource.class)
+@EntityScan(basePackageClasses = StockItem.class)
+@ComponentScan(basePackageClasses = StockResource.class, excludeFilters = @ComponentScan.Filter(
+        type = FilterType.ASSIGNABLE_TYPE, classes = StockSpringBootStarter.class))
+public class BenchmarkApplication {
+
+    static Map<String, Object> properties() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("spring.cloud.bootstrap.enabled", false);
+        properties.put("spring.cloud.config.enabled", false);
+        properties.put("eureka.client.enabled", false);
+        properties.put("spring.session.store-type", "none");
+        properties.put("stock.cache.redis.enabled", false);
+        properties.put("spring.datasource.url", "jdbc:h2:mem:stock;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        properties.put("spring.jpa.hibernate.ddl-auto", "none");
+        properties.put("logging.level.com.github.smatyukevich.app", "WARN");
+        return properties;
+    }
+}
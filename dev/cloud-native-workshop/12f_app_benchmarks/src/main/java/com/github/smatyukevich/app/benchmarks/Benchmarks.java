@@ -0,0 +1,44 @@
+package com.github.smatyukevich.app.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar. Takes the usual JMH command line options, but writes
+ * the results as JSON to jmh-result.json unless -rf / -rff say otherwise, so runs of two
+ * builds can be diffed:
+ * <pre>
+ * (cd ../12f_app && mvn install -DskipTests)
+ * mvn package
+ * java -jar target/12f_app_benchmarks-1.0-SNAPSHOT.jar -rff before.json
+ * java -jar target/12f_app_benchmarks-1.0-SNAPSHOT.jar StockItemBenchmark -p rows=10000
+ * </pre>
+ */
+public final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .resultFormat(commandLine.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(commandLine.getResult().orElse("jmh-result.json"))
+                .build();
+        Runner runner = new Runner(options);
+        if (commandLine.shouldList()) {
+            runner.list();
+        } else {
+            runner.run();
+        }
+    }
+}
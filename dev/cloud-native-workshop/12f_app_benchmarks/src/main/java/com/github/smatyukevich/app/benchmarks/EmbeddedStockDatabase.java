@@ -0,0 +1,82 @@
+package com.github.smatyukevich.app.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.github.smatyukevich.app.StockItemJdbcRepository;
+import com.github.smatyukevich.app.StockResource;
+import com.github.smatyukevich.app.domain.model.StockItem;
+
+/**
+ * Starts {@link BenchmarkApplication} once per trial and fills the stock_item table with
+ * {@code rows} items. The JPA path takes about ten seconds of calls to reach steady state,
+ * hence the long warmup of the subclasses.
+ */
+@State(Scope.Benchmark)
+public abstract class EmbeddedStockDatabase {
+
+    private static final int INSERT_CHUNK_SIZE = 1000;
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    protected StockResource stockResource;
+
+    private ConfigurableApplicationContext context;
+
+    private long[] ids;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(false)
+                .properties(properties())
+                .run();
+        stockResource = context.getBean(StockResource.class);
+
+        StockItemJdbcRepository repository = context.getBean(StockItemJdbcRepository.class);
+        ids = new long[rows];
+        List<StockItem> chunk = new ArrayList<>(INSERT_CHUNK_SIZE);
+        for (int n = 0; n < rows; n += chunk.size()) {
+            chunk.clear();
+            for (int i = n; i < Math.min(rows, n + INSERT_CHUNK_SIZE); i++) {
+                chunk.add(StockItems.create(i));
+            }
+            List<StockItem> stored = repository.insertAll(chunk, repository.reserveIds(chunk.size()));
+            for (int i = 0; i < stored.size(); i++) {
+                ids[n + i] = stored.get(i).getId();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    protected Map<String, Object> properties() {
+        return BenchmarkApplication.properties();
+    }
+
+    protected long randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    protected static ServletWebRequest webRequest(MockHttpServletResponse response) {
+        return new ServletWebRequest(new MockHttpServletRequest(), response);
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.smatyukevich.app.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.smatyukevich.app.domain.model.ItemType;
+
+/**
+ * The ItemType conversions on the hot paths: name to constant as done by the JDBC row
+ * mappers and Hibernate's EnumType.STRING, constant to name for writes, and the JSON
+ * representation. Every call cycles through all constants.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemTypeBenchmark {
+
+    private ObjectMapper objectMapper;
+
+    private ItemType[] types;
+
+    private String[] names;
+
+    private String[] jsonNames;
+
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        types = ItemType.values();
+        names = new String[types.length];
+        jsonNames = new String[types.length];
+        for (int i = 0; i < types.length; i++) {
+            // new strings, as read from a result set, rather than the interned constant names
+            names[i] = new String(types[i].name().toCharArray());
+            jsonNames[i] = objectMapper.writeValueAsString(types[i]);
+        }
+    }
+
+    @Benchmark
+    public ItemType valueOf() {
+        return ItemType.valueOf(names[nextIndex()]);
+    }
+
+    @Benchmark
+    public String name() {
+        return types[nextIndex()].name();
+    }
+
+    @Benchmark
+    public ItemType readJson() throws IOException {
+        return objectMapper.readValue(jsonNames[nextIndex()], ItemType.class);
+    }
+
+    @Benchmark
+    public String writeJson() throws IOException {
+        return objectMapper.writeValueAsString(types[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == types.length ? 0 : index + 1;
+        return index;
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.smatyukevich.app.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.github.smatyukevich.app.domain.model.StockItem;
+
+/**
+ * {@code StockResource.stockItem(id)} for random ids, with and without the local item
+ * cache. The handler is called directly, so MVC dispatch and JSON writing are not part
+ * of the numbers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 15, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StockItemBenchmark extends EmbeddedStockDatabase {
+
+    @Param({"false", "true"})
+    public boolean cache;
+
+    @Override
+    protected Map<String, Object> properties() {
+        Map<String, Object> properties = super.properties();
+        properties.put("stock.cache.enabled", cache);
+        return properties;
+    }
+
+    @Benchmark
+    public StockItem stockItem() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        return stockResource.stockItem(randomId(), webRequest(response), response).call();
+    }
+}
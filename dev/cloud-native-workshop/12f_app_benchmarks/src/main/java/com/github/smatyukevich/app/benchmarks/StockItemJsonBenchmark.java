@@ -0,0 +1,83 @@
+package com.github.smatyukevich.app.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.smatyukevich.app.domain.model.StockItem;
+
+/**
+ * Jackson serialization of a single stock item and of a listing sized page, with an
+ * ObjectMapper configured the way Spring Boot configures the application's one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StockItemJsonBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    private ObjectMapper objectMapper;
+
+    private JavaType pageType;
+
+    private StockItem item;
+
+    private List<StockItem> page;
+
+    private byte[] itemJson;
+
+    private byte[] pageJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        pageType = objectMapper.getTypeFactory().constructCollectionType(List.class, StockItem.class);
+
+        page = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            page.add(StockItems.create(i + 1));
+        }
+        item = page.get(0);
+        itemJson = objectMapper.writeValueAsBytes(item);
+        pageJson = objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] serializeItem() throws IOException {
+        return objectMapper.writeValueAsBytes(item);
+    }
+
+    @Benchmark
+    public StockItem deserializeItem() throws IOException {
+        return objectMapper.readValue(itemJson, StockItem.class);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws IOException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public List<StockItem> deserializePage() throws IOException {
+        return objectMapper.readValue(pageJson, pageType);
+    }
+}
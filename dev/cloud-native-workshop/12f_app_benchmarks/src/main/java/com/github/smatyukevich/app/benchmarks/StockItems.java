@@ -0,0 +1,21 @@
+package com.github.smatyukevich.app.benchmarks;
+
+import java.util.Locale;
+
+import com.github.smatyukevich.app.domain.model.ItemType;
+import com.github.smatyukevich.app.domain.model.StockItem;
+
+/**
+ * Deterministic test data, so every run and every build benchmarks the same rows.
+ */
+final class StockItems {
+
+    private StockItems() {
+    }
+
+    static StockItem create(long n) {
+        ItemType type = ItemType.values()[(int) (n % ItemType.values().length)];
+        return new StockItem(n, type, "Stock item " + n, "Description of stock item " + n + ", a "
+                + type.name().toLowerCase(Locale.ROOT) + " item kept in stock", 0L);
+    }
+}
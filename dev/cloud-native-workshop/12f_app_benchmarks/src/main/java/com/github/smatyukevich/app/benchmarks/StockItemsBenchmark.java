@@ -0,0 +1,48 @@
+package com.github.smatyukevich.app.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.github.smatyukevich.app.domain.model.ItemType;
+import com.github.smatyukevich.app.domain.model.StockItemView;
+
+/**
+ * {@code StockResource.items()} pages of 100 items starting at a random id, over all items
+ * and restricted to one type. The handler is called directly, so MVC dispatch and JSON
+ * writing are not part of the numbers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 15, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StockItemsBenchmark extends EmbeddedStockDatabase {
+
+    private static final int PAGE_SIZE = 100;
+
+    private static final String ALL_FIELDS = "id,type,title,description";
+
+    @Benchmark
+    public List<StockItemView> items() throws Exception {
+        return page(null);
+    }
+
+    @Benchmark
+    public List<StockItemView> itemsByType() throws Exception {
+        return page(ItemType.ELECTRONICS);
+    }
+
+    private List<StockItemView> page(ItemType type) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        return stockResource.items(type, randomId(), PAGE_SIZE, ALL_FIELDS, webRequest(response), response).call();
+    }
+}
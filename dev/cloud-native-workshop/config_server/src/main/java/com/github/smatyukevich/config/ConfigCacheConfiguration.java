@@ -0,0 +1,63 @@
+package com.github.smatyukevich.config;
+
+import org.springframework.aop.framework.AbstractAdvisingBeanPostProcessor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.NameMatchMethodPointcut;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.config.server.environment.EnvironmentRepository;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Puts the {@link EnvironmentCache} in front of the repository the config server configured (git, or
+ * native with the native profile), and watches that one for changes. The repository bean is advised in
+ * place rather than wrapped in another {@link EnvironmentRepository} bean, which would stop the server
+ * from creating its own, and the proxy keeps its class for the beans that need a search path locator.
+ */
+@Configuration
+public class ConfigCacheConfiguration {
+
+    /**
+     * The config server's own repository bean.
+     */
+    static final String BACKEND = "environmentRepository";
+
+    @Bean
+    public static EnvironmentCache environmentCache(@Value("${config.cache.maximum-size:1000}") int maximumSize) {
+        return new EnvironmentCache(maximumSize);
+    }
+
+    @Bean
+    public static AbstractAdvisingBeanPostProcessor environmentCacheAdvisor(EnvironmentCache cache) {
+        NameMatchMethodPointcut findOne = new NameMatchMethodPointcut();
+        findOne.addMethodName("findOne");
+        AbstractAdvisingBeanPostProcessor advisor = new AbstractAdvisingBeanPostProcessor() {
+            {
+                this.advisor = new DefaultPointcutAdvisor(findOne, cache);
+            }
+
+            /**
+             * Only the config server's repository, and only once: it is bound to configuration properties
+             * and initialized again when they are rebound.
+             */
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!BACKEND.equals(beanName) || bean instanceof Advised && ((Advised) bean).indexOf(this.advisor) >= 0) {
+                    return bean;
+                }
+                return super.postProcessAfterInitialization(bean, beanName);
+            }
+        };
+        advisor.setProxyTargetClass(true);
+        return advisor;
+    }
+
+    @Bean
+    public ConfigRepositoryWatcher configRepositoryWatcher(@Qualifier(BACKEND) EnvironmentRepository backend,
+                                                           EnvironmentCache cache,
+                                                           @Value("${config.watch.check-seconds:15}") long checkSeconds) {
+        return new ConfigRepositoryWatcher(backend, cache, checkSeconds);
+    }
+}
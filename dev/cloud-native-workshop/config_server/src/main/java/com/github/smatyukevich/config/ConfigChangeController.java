@@ -0,0 +1,172 @@
+package com.github.smatyukevich.config;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.cloud.config.server.environment.EnvironmentRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Push channel for config changes. Clients keep GET /changes open as a server-sent event stream and get
+ * a "change" event with the repository version when they connect and whenever it changes, instead of
+ * polling. A comment is sent every config.push.keep-alive-seconds so idle connections survive proxies,
+ * and streams end after config.push.timeout-seconds for the clients to reconnect.
+ * <p>
+ * Clients that pass the application, profile and label they fetched get the version of that environment
+ * instead, the one they got as config.client.version, so they can tell whether they missed a change
+ * before subscribing. Environments without a version (the native backend) fall back to the repository's.
+ * <p>
+ * POST /monitor makes the watcher check the repository right away, e.g. from a git push webhook.
+ */
+@RestController
+public class ConfigChangeController implements PublicMetrics, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigChangeController.class);
+
+    private static final String CHANGE_EVENT = "change";
+
+    private final ConfigRepositoryWatcher watcher;
+
+    private final EnvironmentRepository repository;
+
+    private final long timeoutMillis;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private final ScheduledExecutorService keepAlive =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("config-push-"));
+
+    @Autowired
+    public ConfigChangeController(ConfigRepositoryWatcher watcher,
+                                  @Qualifier(ConfigCacheConfiguration.BACKEND) EnvironmentRepository repository,
+                                  @Value("${config.push.keep-alive-seconds:30}") long keepAliveSeconds,
+                                  @Value("${config.push.timeout-seconds:1800}") long timeoutSeconds) {
+        this.watcher = watcher;
+        this.repository = repository;
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        watcher.subscribe(this::publish);
+        keepAlive.scheduleWithFixedDelay(this::keepAlive, keepAliveSeconds, keepAliveSeconds, TimeUnit.SECONDS);
+    }
+
+    @RequestMapping(value = "/changes", method = RequestMethod.GET)
+    public SseEmitter changes(@RequestParam(value = "application", required = false) String application,
+                              @RequestParam(value = "profile", defaultValue = "default") String profile,
+                              @RequestParam(value = "label", required = false) String label) throws IOException {
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeoutMillis), application, profile, label);
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> subscribers.remove(subscriber));
+        // subscribe before reading the version so a change in between is not missed; holding the
+        // subscriber keeps that change from being sent ahead of the version read here
+        synchronized (subscriber) {
+            subscribers.add(subscriber);
+            String version = watcher.getVersion();
+            if (version != null) {
+                send(subscriber, SseEmitter.event().name(CHANGE_EVENT).data(versionOf(subscriber, version, new HashMap<>())));
+            }
+        }
+        return subscriber.emitter;
+    }
+
+    @RequestMapping(value = "/monitor", method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void monitor() {
+        watcher.checkNow();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Collections.<Metric<?>>singletonList(new Metric<>("config.push.subscribers", subscribers.size()));
+    }
+
+    private void publish(String version) {
+        Map<String, String> versions = new HashMap<>();
+        for (Subscriber subscriber : subscribers) {
+            send(subscriber, SseEmitter.event().name(CHANGE_EVENT).data(versionOf(subscriber, version, versions)));
+        }
+    }
+
+    private void keepAlive() {
+        for (Subscriber subscriber : subscribers) {
+            send(subscriber, SseEmitter.event().comment("keep-alive"));
+        }
+    }
+
+    private void send(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        try {
+            synchronized (subscriber) {
+                subscriber.emitter.send(event);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // the client went away
+            subscribers.remove(subscriber);
+            logger.debug("Dropping config change subscriber: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * The version of the subscriber's environment, looked up once per environment in {@code versions}
+     * and through the cache, or the repository version.
+     */
+    private String versionOf(Subscriber subscriber, String repositoryVersion, Map<String, String> versions) {
+        if (subscriber.application == null) {
+            return repositoryVersion;
+        }
+        String environment = subscriber.application + "/" + subscriber.profile + "/" + subscriber.label;
+        String version = versions.computeIfAbsent(environment, key -> {
+            try {
+                return repository.findOne(subscriber.application, subscriber.profile, subscriber.label).getVersion();
+            } catch (RuntimeException e) {
+                logger.warn("Could not resolve the version of {}: {}", environment, e.getMessage());
+                return null;
+            }
+        });
+        return version == null ? repositoryVersion : version;
+    }
+
+    @Override
+    public void destroy() {
+        keepAlive.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+
+        private final String application;
+
+        private final String profile;
+
+        private final String label;
+
+        Subscriber(SseEmitter emitter, String application, String profile, String label) {
+            this.emitter = emitter;
+            this.application = application;
+            this.profile = profile;
+            this.label = label;
+        }
+    }
+}
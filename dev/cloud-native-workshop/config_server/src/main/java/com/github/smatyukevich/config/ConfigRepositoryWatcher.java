@@ -0,0 +1,208 @@
+package com.github.smatyukevich.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.LsRemoteCommand;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cloud.config.server.environment.EnvironmentRepository;
+import org.springframework.cloud.config.server.environment.JGitEnvironmentRepository;
+import org.springframework.cloud.config.server.environment.MultipleJGitEnvironmentRepository;
+import org.springframework.cloud.config.server.environment.NativeEnvironmentRepository;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.ResourceUtils;
+
+/**
+ * Checks every config.watch.check-seconds whether the backing repository changed, and if it did,
+ * invalidates the {@link EnvironmentCache} and tells its subscribers the new version.
+ * The check is cheap next to a lookup: a git backend is asked for its branch and tag heads with
+ * ls-remote, without fetching anything, and for a native backend the names, sizes and modification
+ * times of the config files directly in its file: search locations are compared; like the native
+ * backend, the check doesn't descend into subdirectories. A POST to /monitor, e.g. from a git push webhook, checks
+ * right away.
+ * <p>
+ * When the backend can't be checked (another kind of repository, or a git uri with {application}
+ * placeholders) the cache is simply dropped at every check.
+ */
+public class ConfigRepositoryWatcher implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigRepositoryWatcher.class);
+
+    /**
+     * Extensions of the files Spring Boot's property source loaders read.
+     */
+    private static final Set<String> CONFIG_FILE_EXTENSIONS =
+            new HashSet<>(Arrays.asList("properties", "xml", "yml", "yaml"));
+
+    private final EnvironmentRepository backend;
+
+    private final EnvironmentCache cache;
+
+    private final long checkSeconds;
+
+    private final ScheduledExecutorService checker =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("config-watcher-"));
+
+    private final List<Consumer<String>> subscribers = new CopyOnWriteArrayList<>();
+
+    private volatile String version;
+
+    public ConfigRepositoryWatcher(EnvironmentRepository backend, EnvironmentCache cache, long checkSeconds) {
+        this.backend = backend;
+        this.cache = cache;
+        this.checkSeconds = checkSeconds;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        checker.scheduleWithFixedDelay(this::check, 0, checkSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Checks for changes on the watcher's thread as soon as it is free.
+     */
+    public void checkNow() {
+        checker.execute(this::check);
+    }
+
+    /**
+     * The version of the backing repository at the last check, null before the first one or if the
+     * backend can't be checked.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Calls the subscriber with the new version after each change.
+     */
+    public void subscribe(Consumer<String> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    void check() {
+        String fingerprint;
+        try {
+            fingerprint = fingerprint();
+        } catch (Exception e) {
+            logger.warn("Could not check the config repository for changes, keeping the cache: {}", e.getMessage());
+            return;
+        }
+        if (fingerprint == null) {
+            cache.invalidate();
+            return;
+        }
+        String current = DigestUtils.md5DigestAsHex(fingerprint.getBytes(StandardCharsets.UTF_8));
+        String previous = version;
+        if (current.equals(previous)) {
+            return;
+        }
+        version = current;
+        if (previous != null) {
+            cache.invalidate();
+            logger.info("Config repository changed to version {}, notifying {} subscribers", current, subscribers.size());
+            subscribers.forEach(subscriber -> subscriber.accept(current));
+        }
+    }
+
+    /**
+     * Something that changes whenever the repository does, or null if the backend can't be checked.
+     */
+    private String fingerprint() throws Exception {
+        if (backend instanceof JGitEnvironmentRepository) {
+            StringBuilder fingerprint = new StringBuilder();
+            if (!appendRefs((JGitEnvironmentRepository) backend, fingerprint)) {
+                return null;
+            }
+            if (backend instanceof MultipleJGitEnvironmentRepository) {
+                for (JGitEnvironmentRepository repository : ((MultipleJGitEnvironmentRepository) backend).getRepos().values()) {
+                    if (!appendRefs(repository, fingerprint)) {
+                        return null;
+                    }
+                }
+            }
+            return fingerprint.toString();
+        }
+        if (backend instanceof NativeEnvironmentRepository) {
+            StringBuilder fingerprint = new StringBuilder();
+            for (String location : ((NativeEnvironmentRepository) backend).getSearchLocations()) {
+                // classpath locations can't change while the server runs
+                if (location.startsWith(ResourceUtils.FILE_URL_PREFIX) && !location.contains("{")) {
+                    appendFiles(ResourceUtils.getFile(location), fingerprint);
+                }
+            }
+            return fingerprint.toString();
+        }
+        return null;
+    }
+
+    private static boolean appendRefs(JGitEnvironmentRepository repository, StringBuilder fingerprint) throws Exception {
+        String uri = repository.getUri();
+        if (uri == null || uri.contains("{")) {
+            return false;
+        }
+        LsRemoteCommand lsRemote = Git.lsRemoteRepository()
+                .setRemote(uri)
+                .setHeads(true)
+                .setTags(true)
+                .setTimeout(repository.getTimeout());
+        if (repository.getUsername() != null) {
+            lsRemote.setCredentialsProvider(new UsernamePasswordCredentialsProvider(repository.getUsername(), repository.getPassword()));
+        }
+        Map<String, String> refs = new TreeMap<>();
+        for (Ref ref : lsRemote.call()) {
+            refs.put(ref.getName(), ref.getObjectId().name());
+        }
+        fingerprint.append(uri).append(refs);
+        return true;
+    }
+
+    private static void appendFiles(File location, StringBuilder fingerprint) throws IOException {
+        if (!location.isDirectory()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.list(location.toPath())) {
+            paths.filter(ConfigRepositoryWatcher::isConfigFile).sorted().forEach(path -> {
+                File file = path.toFile();
+                fingerprint.append(path).append(':').append(file.length()).append(':').append(file.lastModified()).append('\n');
+            });
+        }
+    }
+
+    /**
+     * Whether the native backend could load the file as a property source.
+     */
+    private static boolean isConfigFile(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return Files.isRegularFile(path) && dot > 0 && CONFIG_FILE_EXTENSIONS.contains(name.substring(dot + 1));
+    }
+
+    @Override
+    public void destroy() {
+        checker.shutdownNow();
+    }
+}
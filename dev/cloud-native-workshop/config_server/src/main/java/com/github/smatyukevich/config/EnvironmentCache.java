@@ -0,0 +1,95 @@
+package com.github.smatyukevich.config;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+
+/**
+ * Keeps the environments resolved by the backing repository's findOne by application, profile and label
+ * until {@link ConfigRepositoryWatcher} sees the repository change. Concurrent requests for an environment
+ * that isn't cached yet wait for a single lookup, so a fleet restarting at once costs one fetch from
+ * the backend per environment instead of one per instance; the git backend serializes its lookups.
+ * Failed lookups are not cached.
+ * <p>
+ * At most config.cache.maximum-size environments are kept; the cache starts over when it is full.
+ */
+public class EnvironmentCache implements MethodInterceptor, PublicMetrics {
+
+    private final int maximumSize;
+
+    private final ConcurrentMap<String, CompletableFuture<Environment>> environments = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    public EnvironmentCache(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object[] arguments = invocation.getArguments();
+        String key = arguments[0] + "/" + arguments[1] + "/" + arguments[2];
+        CompletableFuture<Environment> loading = new CompletableFuture<>();
+        CompletableFuture<Environment> cached = environments.putIfAbsent(key, loading);
+        if (cached == null) {
+            misses.incrementAndGet();
+            try {
+                loading.complete((Environment) invocation.proceed());
+            } catch (Throwable e) {
+                environments.remove(key, loading);
+                loading.completeExceptionally(e);
+                throw e;
+            }
+            if (environments.size() > maximumSize) {
+                environments.clear();
+            }
+            cached = loading;
+        } else {
+            hits.incrementAndGet();
+        }
+        try {
+            return copy(cached.join());
+        } catch (CompletionException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Forgets all environments; lookups in progress complete but are not kept.
+     */
+    public void invalidate() {
+        environments.clear();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("config.cache.size", environments.size()),
+                new Metric<>("config.cache.hits", hits.get()),
+                new Metric<>("config.cache.misses", misses.get()));
+    }
+
+    /**
+     * The controller adds the server's overrides to the environment it gets, so each request gets its own.
+     */
+    private static Environment copy(Environment environment) {
+        Environment copy = new Environment(environment);
+        for (PropertySource source : environment.getPropertySources()) {
+            copy.add(source);
+        }
+        return copy;
+    }
+}
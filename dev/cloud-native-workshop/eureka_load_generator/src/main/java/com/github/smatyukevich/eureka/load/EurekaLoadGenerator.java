@@ -0,0 +1,204 @@
+package com.github.smatyukevich.eureka.load;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Simulates a fleet of Eureka clients against a running eureka_server. For each step of --instances it
+ * registers instances up to that number, waits for the server's response cache to pick them up, and then
+ * for --duration-seconds sends heartbeats as fast as --heartbeat-threads can while --fetch-threads
+ * alternate full and delta fetches, gzip accepted, as the Eureka client does. Each step prints heartbeat
+ * throughput, fetch latencies and the size of the compressed payloads:
+ * <pre>
+ * (cd ../eureka_server &amp;&amp; mvn package &amp;&amp; java -jar target/eureka_server-1.0-SNAPSHOT.jar \
+ *         --spring.profiles.active=scale --server.port=8761 \
+ *         --eureka.client.register-with-eureka=false --eureka.client.fetch-registry=false)
+ * mvn package
+ * java -jar target/eureka_load_generator-1.0-SNAPSHOT.jar --server=http://localhost:8761/eureka \
+ *         --instances=1000,5000,10000
+ * </pre>
+ * Run it from another machine than the server for numbers that mean anything. The instances are
+ * cancelled at the end unless --cancel=false.
+ */
+public final class EurekaLoadGenerator {
+
+    private static final String ROW = "%9s %10s %12s %9s %9s %10s %10s %9s %11s %11s %9s %9s%n";
+
+    private final EurekaRestClient client;
+
+    private final int applications;
+
+    private final int heartbeatThreads;
+
+    private final int fetchThreads;
+
+    private final long durationMillis;
+
+    private final long settleMillis;
+
+    private int registered;
+
+    private EurekaLoadGenerator(Map<String, String> options) {
+        this.client = new EurekaRestClient(options.getOrDefault("server", "http://localhost:8761/eureka"));
+        this.applications = Integer.parseInt(options.getOrDefault("applications", "100"));
+        this.heartbeatThreads = Integer.parseInt(options.getOrDefault("heartbeat-threads", "16"));
+        this.fetchThreads = Integer.parseInt(options.getOrDefault("fetch-threads", "4"));
+        this.durationMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(options.getOrDefault("duration-seconds", "30")));
+        this.settleMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(options.getOrDefault("settle-seconds", "35")));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --option=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        EurekaLoadGenerator generator = new EurekaLoadGenerator(options);
+
+        System.out.printf(ROW, "instances", "register/s", "heartbeats/s", "hb p50ms", "hb p99ms",
+                "full p50ms", "full p99ms", "full KB", "delta p50ms", "delta p99ms", "delta KB", "failures");
+        try {
+            for (String step : options.getOrDefault("instances", "1000,5000,10000").split(",")) {
+                generator.step(Integer.parseInt(step.trim()));
+            }
+        } finally {
+            if (Boolean.parseBoolean(options.getOrDefault("cancel", "true"))) {
+                generator.cancelAll();
+            }
+        }
+    }
+
+    private void step(int instances) throws Exception {
+        long start = System.nanoTime();
+        int added = instances - registered;
+        int registerFailures = forEachInstance(registered, instances, this::register);
+        registered = Math.max(registered, instances);
+        double registrationsPerSecond = added * 1e9 / (System.nanoTime() - start);
+        Thread.sleep(settleMillis);
+
+        List<Latencies> heartbeats = new ArrayList<>();
+        List<Latencies> fullFetches = new ArrayList<>();
+        List<Latencies> deltaFetches = new ArrayList<>();
+        ExecutorService workers = Executors.newFixedThreadPool(heartbeatThreads + fetchThreads);
+        long deadline = System.currentTimeMillis() + durationMillis;
+        AtomicInteger next = new AtomicInteger();
+        for (int i = 0; i < heartbeatThreads; i++) {
+            Latencies latencies = new Latencies();
+            heartbeats.add(latencies);
+            workers.execute(() -> {
+                while (System.currentTimeMillis() < deadline) {
+                    int instance = Math.floorMod(next.getAndIncrement(), registered);
+                    call(latencies, () -> client.renew(app(instance), instanceId(instance)) ? 0 : -1);
+                }
+            });
+        }
+        for (int i = 0; i < fetchThreads; i++) {
+            Latencies full = new Latencies();
+            Latencies delta = new Latencies();
+            fullFetches.add(full);
+            deltaFetches.add(delta);
+            workers.execute(() -> {
+                while (System.currentTimeMillis() < deadline) {
+                    call(full, () -> client.fetch("/apps/"));
+                    call(delta, () -> client.fetch("/apps/delta"));
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(durationMillis + TimeUnit.MINUTES.toMillis(1), TimeUnit.MILLISECONDS);
+
+        Latencies heartbeat = Latencies.merge(heartbeats);
+        Latencies full = Latencies.merge(fullFetches);
+        Latencies delta = Latencies.merge(deltaFetches);
+        System.out.printf(ROW, instances, format(registrationsPerSecond), format(heartbeat.count() * 1000.0 / durationMillis),
+                format(heartbeat.percentileMillis(0.5)), format(heartbeat.percentileMillis(0.99)),
+                format(full.percentileMillis(0.5)), format(full.percentileMillis(0.99)), format(full.averageBytes() / 1024.0),
+                format(delta.percentileMillis(0.5)), format(delta.percentileMillis(0.99)), format(delta.averageBytes() / 1024.0),
+                registerFailures + heartbeat.failures() + full.failures() + delta.failures());
+    }
+
+    private void cancelAll() throws Exception {
+        forEachInstance(0, registered, instance -> client.cancel(app(instance), instanceId(instance)));
+    }
+
+    private boolean register(int instance) throws IOException {
+        String host = "10." + (instance >> 16 & 0xff) + "." + (instance >> 8 & 0xff) + "." + (instance & 0xff);
+        return client.register(app(instance), instanceId(instance), host);
+    }
+
+    /**
+     * Calls the action for the instances from (inclusive) to (exclusive) on the heartbeat threads and
+     * returns the number of failed calls.
+     */
+    private int forEachInstance(int from, int to, InstanceCall action) throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(heartbeatThreads);
+        AtomicInteger failures = new AtomicInteger();
+        List<Future<?>> done = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            int instance = i;
+            done.add(workers.submit(() -> {
+                try {
+                    if (!action.call(instance)) {
+                        failures.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    failures.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> future : done) {
+            future.get();
+        }
+        workers.shutdown();
+        return failures.get();
+    }
+
+    /**
+     * Times the call; a negative result or an exception counts as a failure, anything else is the
+     * response size.
+     */
+    private static void call(Latencies latencies, Call call) {
+        long start = System.nanoTime();
+        try {
+            long size = call.call();
+            if (size < 0) {
+                latencies.failed();
+                return;
+            }
+            latencies.record(System.nanoTime() - start);
+            latencies.recordBytes(size);
+        } catch (IOException e) {
+            latencies.failed();
+        }
+    }
+
+    private String app(int instance) {
+        return "LOAD-APP-" + instance % applications;
+    }
+
+    private static String instanceId(int instance) {
+        return "load-instance-" + instance;
+    }
+
+    private static String format(double value) {
+        return String.format("%.1f", value);
+    }
+
+    private interface Call {
+        long call() throws IOException;
+    }
+
+    private interface InstanceCall {
+        boolean call(int instance) throws IOException;
+    }
+}
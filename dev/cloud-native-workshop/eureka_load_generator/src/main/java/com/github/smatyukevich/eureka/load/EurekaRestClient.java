@@ -0,0 +1,99 @@
+package com.github.smatyukevich.eureka.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The calls a Eureka client makes, over plain HTTP keep-alive connections: register, renew (the
+ * heartbeat), cancel, and full and delta fetches of the registry with gzip accepted.
+ */
+class EurekaRestClient {
+
+    private static final int TIMEOUT_MILLIS = 10000;
+
+    private static final String INSTANCE_JSON = "{\"instance\":{"
+            + "\"instanceId\":\"%1$s\",\"hostName\":\"%2$s\",\"app\":\"%3$s\",\"ipAddr\":\"%2$s\","
+            + "\"status\":\"UP\",\"overriddenstatus\":\"UNKNOWN\","
+            + "\"port\":{\"$\":8080,\"@enabled\":\"true\"},\"securePort\":{\"$\":443,\"@enabled\":\"false\"},"
+            + "\"countryId\":1,\"dataCenterInfo\":{\"@class\":\"com.netflix.appinfo.InstanceInfo$DefaultDataCenterInfo\",\"name\":\"MyOwn\"},"
+            + "\"leaseInfo\":{\"renewalIntervalInSecs\":30,\"durationInSecs\":90},"
+            + "\"homePageUrl\":\"http://%2$s:8080/\",\"statusPageUrl\":\"http://%2$s:8080/info\","
+            + "\"healthCheckUrl\":\"http://%2$s:8080/health\","
+            + "\"vipAddress\":\"%4$s\",\"secureVipAddress\":\"%4$s\",\"isCoordinatingDiscoveryServer\":\"false\"}}";
+
+    private final String serverUrl;
+
+    EurekaRestClient(String serverUrl) {
+        this.serverUrl = serverUrl.endsWith("/") ? serverUrl.substring(0, serverUrl.length() - 1) : serverUrl;
+    }
+
+    boolean register(String app, String instanceId, String host) throws IOException {
+        byte[] body = String.format(INSTANCE_JSON, instanceId, host, app, app.toLowerCase())
+                .getBytes(StandardCharsets.UTF_8);
+        HttpURLConnection connection = open("/apps/" + app, "POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        return succeeded(connection);
+    }
+
+    boolean renew(String app, String instanceId) throws IOException {
+        return succeeded(open("/apps/" + app + "/" + instanceId + "?status=UP", "PUT"));
+    }
+
+    boolean cancel(String app, String instanceId) throws IOException {
+        return succeeded(open("/apps/" + app + "/" + instanceId, "DELETE"));
+    }
+
+    /**
+     * Fetches the full registry, or the delta with path "/apps/delta", and returns the size of the
+     * response as sent, or -1 if the server didn't answer with 200.
+     */
+    long fetch(String path) throws IOException {
+        HttpURLConnection connection = open(path, "GET");
+        connection.setRequestProperty("Accept", "application/json");
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        long size = drain(in);
+        return status == 200 ? size : -1;
+    }
+
+    private HttpURLConnection open(String path, String method) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(serverUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        return connection;
+    }
+
+    /**
+     * Reads the response to the end, so the connection goes back to the keep-alive cache.
+     */
+    private static boolean succeeded(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        drain(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+        return status >= 200 && status < 300;
+    }
+
+    private static long drain(InputStream in) throws IOException {
+        if (in == null) {
+            return 0;
+        }
+        long size = 0;
+        byte[] buffer = new byte[8192];
+        try (InputStream stream = in) {
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                size += read;
+            }
+        }
+        return size;
+    }
+}
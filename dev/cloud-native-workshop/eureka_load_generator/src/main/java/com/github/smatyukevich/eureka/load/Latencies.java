@@ -0,0 +1,72 @@
+package com.github.smatyukevich.eureka.load;
+
+import java.util.Arrays;
+
+/**
+ * Latencies of one kind of call made by one thread; merged per step for the report.
+ */
+class Latencies {
+
+    private long[] nanos = new long[1024];
+
+    private int count;
+
+    private int failures;
+
+    private long bytes;
+
+    void record(long latencyNanos) {
+        if (count == nanos.length) {
+            nanos = Arrays.copyOf(nanos, count * 2);
+        }
+        nanos[count++] = latencyNanos;
+    }
+
+    void recordBytes(long size) {
+        bytes += size;
+    }
+
+    void failed() {
+        failures++;
+    }
+
+    int count() {
+        return count;
+    }
+
+    int failures() {
+        return failures;
+    }
+
+    /**
+     * Average response size in bytes.
+     */
+    long averageBytes() {
+        return count == 0 ? 0 : bytes / count;
+    }
+
+    /**
+     * The latency in milliseconds below which the given share of calls finished, 0 &lt; p &lt;= 1.
+     * Sorts the recorded latencies, so call it once recording is over.
+     */
+    double percentileMillis(double p) {
+        if (count == 0) {
+            return 0;
+        }
+        Arrays.sort(nanos, 0, count);
+        int index = (int) Math.ceil(p * count) - 1;
+        return nanos[Math.max(index, 0)] / 1e6;
+    }
+
+    static Latencies merge(Iterable<Latencies> all) {
+        Latencies merged = new Latencies();
+        for (Latencies latencies : all) {
+            merged.nanos = Arrays.copyOf(merged.nanos, Math.max(merged.nanos.length, merged.count + latencies.count));
+            System.arraycopy(latencies.nanos, 0, merged.nanos, merged.count, latencies.count);
+            merged.count += latencies.count;
+            merged.failures += latencies.failures;
+            merged.bytes += latencies.bytes;
+        }
+        return merged;
+    }
+}
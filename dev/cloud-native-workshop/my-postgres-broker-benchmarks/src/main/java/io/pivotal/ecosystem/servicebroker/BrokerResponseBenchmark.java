@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.ecosystem.servicebroker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.servicebroker.model.Catalog;
+import org.springframework.cloud.servicebroker.service.BeanCatalogService;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The responses the cloud controller asks for most. The catalog as the broker library's controller writes it,
+ * serializing the catalog on every request, against {@link CatalogResponseFilter} sending precomputed bytes, or
+ * nothing when the ETag matches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BrokerResponseBenchmark {
+
+    private static final FilterChain NOT_HANDLED = (request, response) -> {
+        throw new IllegalStateException("request was not handled by the filter");
+    };
+
+    private ObjectMapper objectMapper;
+
+    private Catalog catalog;
+
+    private CatalogResponseFilter filter;
+
+    private MockHttpServletRequest catalogRequest;
+
+    private MockHttpServletRequest conditionalCatalogRequest;
+
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        try (InputStream in = new ClassPathResource("catalog.json").getInputStream()) {
+            catalog = objectMapper.readValue(in, Catalog.class);
+        }
+        filter = new CatalogResponseFilter(new BeanCatalogService(catalog), objectMapper);
+
+        catalogRequest = new MockHttpServletRequest("GET", CatalogResponseFilter.CATALOG_PATH);
+        response = new DiscardingResponse();
+        filter.doFilter(catalogRequest, response, NOT_HANDLED);
+        conditionalCatalogRequest = new MockHttpServletRequest("GET", CatalogResponseFilter.CATALOG_PATH);
+        conditionalCatalogRequest.addHeader("If-None-Match", response.getHeader("ETag"));
+    }
+
+    @Benchmark
+    public MockHttpServletResponse catalogSerialized() throws IOException {
+        response.reset();
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), catalog);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse catalogPrecomputed() throws Exception {
+        response.reset();
+        filter.doFilter(catalogRequest, response, NOT_HANDLED);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse catalogNotModified() throws Exception {
+        response.reset();
+        filter.doFilter(conditionalCatalogRequest, response, NOT_HANDLED);
+        return response;
+    }
+
+    /**
+     * Discards the body. The mock response's stream copies byte by byte, which a servlet container's does not.
+     */
+    private static final class DiscardingResponse extends MockHttpServletResponse {
+
+        private final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+    }
+}
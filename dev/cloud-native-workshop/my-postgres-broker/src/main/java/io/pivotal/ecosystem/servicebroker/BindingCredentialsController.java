@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.ecosystem.servicebroker;
+
+import io.pivotal.ecosystem.servicebroker.model.ServiceBinding;
+import io.pivotal.ecosystem.servicebroker.service.ServiceBindingRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Rotates a binding's password without an unbind/bind round trip:
+ * <pre>
+ * curl -u admin:admin -X PUT https://your-broker-url/bindings/{bindingId}/credentials
+ * </pre>
+ * returns the binding's new credentials.
+ */
+@RestController
+@Slf4j
+class BindingCredentialsController {
+
+    private final PostgresBroker broker;
+
+    private final ServiceBindingRepository bindings;
+
+    BindingCredentialsController(PostgresBroker broker, ServiceBindingRepository bindings) {
+        this.broker = broker;
+        this.bindings = bindings;
+    }
+
+    @PutMapping("/bindings/{bindingId}/credentials")
+    ResponseEntity<Map<String, Object>> rotate(@PathVariable String bindingId) {
+        ServiceBinding binding = bindings.findOne(bindingId);
+        if (binding == null || binding.isDeleted()) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> credentials = broker.rotateCredentials(binding);
+        bindings.save(binding);
+        log.info("rotated credentials of binding: {}", bindingId);
+        return ResponseEntity.ok(credentials);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.ecosystem.servicebroker;
+
+import com.zaxxer.hikari.metrics.MetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes the connection pool's state under broker.datasource.*: connection counts, threads waiting for a
+ * connection, time spent waiting and holding connections, and acquire timeouts. The wait and usage times are
+ * running totals, divide by broker.datasource.acquired for an average; wait-max-ms is the longest wait since
+ * the previous read. With several POSTGRES_HOSTS the figures are summed over their pools.
+ */
+class ConnectionPoolMetrics implements MetricsTrackerFactory, PublicMetrics {
+
+    private final LongAdder acquired = new LongAdder();
+
+    private final LongAdder waitNanos = new LongAdder();
+
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private final LongAdder usageMillis = new LongAdder();
+
+    private final LongAdder timeouts = new LongAdder();
+
+    private final List<PoolStats> poolStats = new CopyOnWriteArrayList<>();
+
+    @Override
+    public MetricsTracker create(String poolName, PoolStats poolStats) {
+        if (poolStats != null) {
+            this.poolStats.add(poolStats);
+        }
+        return new MetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquired.increment();
+                waitNanos.add(elapsedAcquiredNanos);
+                maxWaitNanos.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usageMillis.add(elapsedBorrowedMillis);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        if (!poolStats.isEmpty()) {
+            metrics.add(new Metric<>("broker.datasource.active", poolStats.stream().mapToInt(PoolStats::getActiveConnections).sum()));
+            metrics.add(new Metric<>("broker.datasource.idle", poolStats.stream().mapToInt(PoolStats::getIdleConnections).sum()));
+            metrics.add(new Metric<>("broker.datasource.total", poolStats.stream().mapToInt(PoolStats::getTotalConnections).sum()));
+            metrics.add(new Metric<>("broker.datasource.pending", poolStats.stream().mapToInt(PoolStats::getPendingThreads).sum()));
+        }
+        metrics.add(new Metric<>("broker.datasource.acquired", acquired.sum()));
+        metrics.add(new Metric<>("broker.datasource.wait-ms", TimeUnit.NANOSECONDS.toMillis(waitNanos.sum())));
+        metrics.add(new Metric<>("broker.datasource.wait-max-ms", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.getAndSet(0))));
+        metrics.add(new Metric<>("broker.datasource.usage-ms", usageMillis.sum()));
+        metrics.add(new Metric<>("broker.datasource.timeouts", timeouts.sum()));
+        return metrics;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.ecosystem.servicebroker;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps a number of unassigned databases created ahead of time, so create-service only has to rename one
+ * instead of waiting for CREATE DATABASE to copy the template. When the pool drops to POOL_LOW_WATERMARK it is
+ * refilled in the background up to POOL_HIGH_WATERMARK; a POOL_HIGH_WATERMARK of 0 (the default) turns the pool off.
+ * <p>
+ * Pooled databases are named pool followed by 32 hex digits and carry a comment saying they belong to the pool; only
+ * databases with both are taken for pooled ones, so a tenant database that happens to start with pool is never
+ * handed out. That way they survive broker restarts and several broker instances can share them: the rename is what
+ * claims a database, and only one rename of it can succeed. The claimed database loses the comment.
+ * <p>
+ * Each of the POSTGRES_HOSTS has its own pool, filled to the same watermarks.
+ */
+@Component
+@Slf4j
+class DatabasePool implements PublicMetrics, DisposableBean {
+
+    static final String POOL_PREFIX = "pool";
+
+    static final String POOL_NAME_PATTERN = "^" + POOL_PREFIX + "[0-9a-f]{32}$";
+
+    static final String POOL_COMMENT = "my-postgres-broker pool";
+
+    private static final Pattern POOL_NAME = Pattern.compile(POOL_NAME_PATTERN);
+
+    private final PostgresHosts hosts;
+
+    private final int lowWatermark;
+
+    private final int highWatermark;
+
+    private final Map<String, Queue<String>> databasesByHost = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService refiller = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("db-pool-"));
+
+    private final AtomicLong claimed = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    DatabasePool(PostgresHosts hosts,
+                 @Value("${POOL_LOW_WATERMARK:0}") int lowWatermark,
+                 @Value("${POOL_HIGH_WATERMARK:0}") int highWatermark,
+                 @Value("${POOL_CHECK_SECONDS:60}") long checkSeconds) {
+        this.hosts = hosts;
+        hosts.all().forEach(host -> databasesByHost.put(host.getName(), new ConcurrentLinkedQueue<>()));
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        if (highWatermark > 0) {
+            refiller.scheduleWithFixedDelay(this::refillIfLow, checkSeconds, checkSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (highWatermark > 0) {
+            refiller.execute(() -> {
+                for (PostgresHost host : hosts.all()) {
+                    try {
+                        databases(host).addAll(host.getClient().findDatabases(POOL_NAME_PATTERN, POOL_COMMENT));
+                        log.info("found {} pooled databases on host: {}", databases(host).size(), host);
+                    } catch (RuntimeException e) {
+                        log.error("error finding the pooled databases on host: {}", host, e);
+                    }
+                }
+                refillIfLow();
+            });
+        }
+    }
+
+    /**
+     * Renames a pooled database of the host to the given name.
+     *
+     * @return true if a pooled database was claimed, false if the host's pool is empty.
+     */
+    boolean claim(PostgresHost host, String db) {
+        Queue<String> databases = databases(host);
+        PostgresClient client = host.getClient();
+        try {
+            String pooled;
+            while ((pooled = databases.poll()) != null) {
+                try {
+                    client.renameDatabase(pooled, db);
+                    claimed.incrementAndGet();
+                    log.info("claimed pooled database: {} on host: {} as: {}, {} left.", pooled, host, db, databases.size());
+                    uncomment(client, db);
+                    return true;
+                } catch (RuntimeException e) {
+                    if (client.checkDatabaseExists(pooled)) {
+                        databases.add(pooled);
+                        throw e;
+                    }
+                    // claimed by another broker instance in the meantime
+                }
+            }
+            if (highWatermark > 0) {
+                misses.incrementAndGet();
+            }
+            return false;
+        } finally {
+            if (highWatermark > 0) {
+                refiller.execute(() -> refillIfLow(host));
+            }
+        }
+    }
+
+    /**
+     * The name no longer matches once renamed, the comment only keeps the database from looking pooled.
+     */
+    private static void uncomment(PostgresClient client, String db) {
+        try {
+            client.commentDatabase(db, null);
+        } catch (RuntimeException e) {
+            log.warn("error removing the pool comment of database: {}", db, e);
+        }
+    }
+
+    /**
+     * Names of the form of pooled databases; postgres folds unquoted names to lower case.
+     */
+    static boolean isReserved(String db) {
+        return POOL_NAME.matcher(db.toLowerCase(Locale.ROOT)).matches();
+    }
+
+    /**
+     * Pooled databases on all hosts.
+     */
+    int size() {
+        return databasesByHost.values().stream().mapToInt(Queue::size).sum();
+    }
+
+    private Queue<String> databases(PostgresHost host) {
+        return databasesByHost.get(host.getName());
+    }
+
+    private void refillIfLow() {
+        hosts.all().forEach(this::refillIfLow);
+    }
+
+    private void refillIfLow(PostgresHost host) {
+        Queue<String> databases = databases(host);
+        if (databases.size() > lowWatermark) {
+            return;
+        }
+        try {
+            while (databases.size() < highWatermark) {
+                String db = POOL_PREFIX + UUID.randomUUID().toString().replace("-", "");
+                PostgresClient client = host.getClient();
+                client.createDatabase(db);
+                try {
+                    client.commentDatabase(db, POOL_COMMENT);
+                } catch (RuntimeException e) {
+                    client.deleteDatabase(db);
+                    throw e;
+                }
+                databases.add(db);
+            }
+            log.info("database pool of host: {} refilled to {}.", host, databases.size());
+        } catch (RuntimeException e) {
+            log.error("error refilling the database pool of host: {}, {} databases left.", host, databases.size(), e);
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("broker.pool.size", size()),
+                new Metric<>("broker.pool.claimed", claimed.get()),
+                new Metric<>("broker.pool.misses", misses.get()));
+    }
+
+    @Override
+    public void destroy() {
+        refiller.shutdownNow();
+    }
+}
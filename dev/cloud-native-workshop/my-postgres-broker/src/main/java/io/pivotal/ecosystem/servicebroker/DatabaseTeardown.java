@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.ecosystem.servicebroker;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drops a service instance's database even while apps are still connected to it: new connections are refused first,
+ * then all sessions are terminated in one statement, then the database is dropped. Sessions that slipped in between
+ * make DROP DATABASE fail, so termination and drop are retried up to TEARDOWN_ATTEMPTS times, TEARDOWN_RETRY_MILLIS
+ * apart. The users the broker created for the database are dropped afterwards, when nothing depends on them anymore.
+ * <p>
+ * At most TEARDOWN_PARALLELISM teardowns run at once, the others wait their turn. In async mode the provisioning
+ * pool bounds them as well, PROVISIONING_THREADS operations of any kind run at once. The limit is shared by all
+ * POSTGRES_HOSTS.
+ */
+@Component
+@Slf4j
+class DatabaseTeardown implements PublicMetrics {
+
+    private final int parallelism;
+
+    private final Semaphore permits;
+
+    private final int attempts;
+
+    private final long retryMillis;
+
+    private final AtomicLong retries = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    DatabaseTeardown(@Value("${TEARDOWN_PARALLELISM:4}") int parallelism,
+                     @Value("${TEARDOWN_ATTEMPTS:3}") int attempts,
+                     @Value("${TEARDOWN_RETRY_MILLIS:1000}") long retryMillis) {
+        this.parallelism = parallelism;
+        this.permits = new Semaphore(parallelism, true);
+        this.attempts = attempts;
+        this.retryMillis = retryMillis;
+    }
+
+    /**
+     * @param client the client of the host the database is on
+     * @param users  users to drop along with the database, on top of the ones the broker created for it
+     */
+    void drop(PostgresClient client, String db, Collection<String> users) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceBrokerException("interrupted waiting to drop database: " + db);
+        }
+        try {
+            Set<String> dbUsers = new LinkedHashSet<>(users);
+            if (client.checkDatabaseExists(db)) {
+                dbUsers.addAll(client.findUsers(db));
+                client.blockConnections(db);
+                dropDatabase(client, db);
+            }
+            if (!dbUsers.isEmpty()) {
+                client.dropUsers(null, dbUsers);
+            }
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            throw e;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void dropDatabase(PostgresClient client, String db) {
+        for (int attempt = 1; ; attempt++) {
+            int terminated = client.terminateConnections(db);
+            if (terminated > 0) {
+                log.info("terminated {} connections to database: {}", terminated, db);
+            }
+            try {
+                client.deleteDatabase(db);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= attempts) {
+                    throw e;
+                }
+                retries.incrementAndGet();
+                log.warn("dropping database: {} failed, attempt {} of {}: {}", db, attempt, attempts, e.getMessage());
+                sleep();
+            }
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(retryMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceBrokerException("interrupted dropping database.");
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("broker.teardown.active", parallelism - permits.availablePermits()),
+                new Metric<>("broker.teardown.waiting", permits.getQueueLength()),
+                new Metric<>("broker.teardown.retries", retries.get()),
+                new Metric<>("broker.teardown.failures", failures.get()));
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.ecosystem.servicebroker;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Places a database on the host with the lowest load, as measured by one query per host: "databases" (the default)
+ * counts databases, "connections" open connections and "disk" the bytes used by all databases. Hosts that can't be
+ * measured are skipped, so a server that is down doesn't get new databases.
+ * <p>
+ * Measurements are kept for PLACEMENT_MEASURE_SECONDS and then taken again in the background, so create-service
+ * doesn't wait for every host, least of all for one that is down and only answers with a connection timeout. Only
+ * the first placement after startup measures, all hosts at once. Until a host is measured again, the databases
+ * placed on it are added to its count, so a burst of creates doesn't all go to the same host.
+ */
+@Slf4j
+class LeastLoadedPlacement implements PlacementStrategy, DisposableBean {
+
+    private final String load;
+
+    private final ToLongFunction<PostgresClient> measure;
+
+    /**
+     * What a new database adds to the load, 0 if that isn't known.
+     */
+    private final long perDatabase;
+
+    private final long maxAgeMillis;
+
+    private final ConcurrentMap<String, Measurement> measurements = new ConcurrentHashMap<>();
+
+    private final Set<String> measuring = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService measurer;
+
+    LeastLoadedPlacement(String load, ToLongFunction<PostgresClient> measure, long perDatabase, long maxAgeSeconds) {
+        this.load = load;
+        this.measure = measure;
+        this.perDatabase = perDatabase;
+        this.maxAgeMillis = TimeUnit.SECONDS.toMillis(maxAgeSeconds);
+        CustomizableThreadFactory threads = new CustomizableThreadFactory("placement-");
+        threads.setDaemon(true);
+        this.measurer = Executors.newCachedThreadPool(threads);
+    }
+
+    static LeastLoadedPlacement named(String load, long maxAgeSeconds) {
+        switch (load) {
+            case "databases":
+                return new LeastLoadedPlacement(load, PostgresClient::countDatabases, 1, maxAgeSeconds);
+            case "connections":
+                return new LeastLoadedPlacement(load, PostgresClient::countConnections, 0, maxAgeSeconds);
+            case "disk":
+                return new LeastLoadedPlacement(load, PostgresClient::databasesSize, 0, maxAgeSeconds);
+            default:
+                throw new IllegalArgumentException("unknown PLACEMENT_STRATEGY: " + load + ", use databases, connections or disk.");
+        }
+    }
+
+    @Override
+    public PostgresHost choose(List<PostgresHost> hosts) {
+        CompletableFuture.allOf(hosts.stream()
+                .filter(host -> !measurements.containsKey(host.getName()))
+                .map(host -> CompletableFuture.runAsync(() -> measure(host), measurer))
+                .toArray(CompletableFuture[]::new)).join();
+
+        long now = System.currentTimeMillis();
+        PostgresHost chosen = null;
+        long lowest = Long.MAX_VALUE;
+        for (PostgresHost host : hosts) {
+            Measurement measurement = measurements.get(host.getName());
+            if (now - measurement.takenAt >= maxAgeMillis) {
+                measureLater(host);
+            }
+            if (measurement.reachable && (chosen == null || measurement.load < lowest)) {
+                chosen = host;
+                lowest = measurement.load;
+            }
+        }
+        if (chosen == null) {
+            throw new ServiceBrokerException("No postgres host is reachable.");
+        }
+        measurements.computeIfPresent(chosen.getName(), (name, measurement) -> measurement.plus(perDatabase));
+        log.info("placing database on host: {}, {}: {}", chosen, load, lowest);
+        return chosen;
+    }
+
+    private void measureLater(PostgresHost host) {
+        if (measuring.add(host.getName())) {
+            measurer.execute(() -> {
+                try {
+                    measure(host);
+                } finally {
+                    measuring.remove(host.getName());
+                }
+            });
+        }
+    }
+
+    private void measure(PostgresHost host) {
+        long takenAt = System.currentTimeMillis();
+        try {
+            measurements.put(host.getName(), new Measurement(true, measure.applyAsLong(host.getClient()), takenAt));
+        } catch (RuntimeException e) {
+            log.warn("can't measure {} of host: {}, skipping it: {}", load, host, e.getMessage());
+            measurements.put(host.getName(), new Measurement(false, 0, takenAt));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        measurer.shutdownNow();
+    }
+
+    private static final class Measurement {
+
+        private final boolean reachable;
+
+        private final long load;
+
+        private final long takenAt;
+
+        private Measurement(boolean reachable, long load, long takenAt) {
+            this.reachable = reachable;
+            this.load = load;
+            this.takenAt = takenAt;
+        }
+
+        private Measurement plus(long added) {
+            return added == 0 ? this : new Measurement(reachable, load + added, takenAt);
+        }
+    }
+}
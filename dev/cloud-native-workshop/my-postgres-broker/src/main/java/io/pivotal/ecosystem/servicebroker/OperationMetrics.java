@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.ecosystem.servicebroker;
+
+import io.pivotal.ecosystem.servicebroker.model.LastOperation;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Times the broker's work, split by outcome, so slow provisioning can be pinned on the broker, the connection pool
+ * (see broker.datasource.*) or postgres:
+ * <ul>
+ * <li>broker.operations.*: create-instance, delete-instance, bind, unbind and last-operation, as seen by the cloud
+ * controller; the outcome is the operation's state</li>
+ * <li>broker.provisioning.*: async creates and deletes run in the background</li>
+ * <li>broker.statements.*: every SQL statement, by kind, see {@link TimedJdbcTemplate}</li>
+ * </ul>
+ * Each timer reports count, total-ms and max-ms (the longest since the previous read), plus a histogram: le-10ms
+ * counts the calls that took at most 10ms, and so on up to le-10000ms.
+ */
+@Component
+class OperationMetrics implements PublicMetrics {
+
+    static final String SUCCESS = "success";
+    static final String ERROR = "error";
+
+    private static final long[] BUCKETS_MS = {10, 50, 100, 500, 1000, 5000, 10000};
+
+    private final Map<String, Timer> timers = new ConcurrentSkipListMap<>();
+
+    /**
+     * Runs a broker operation, an exception counts as outcome "error".
+     */
+    LastOperation time(String operation, Supplier<LastOperation> call) {
+        long start = System.nanoTime();
+        String outcome = ERROR;
+        try {
+            LastOperation result = call.get();
+            outcome = result.getState().toLowerCase(Locale.ROOT).replace(' ', '-');
+            return result;
+        } finally {
+            record("operations." + operation, outcome, System.nanoTime() - start);
+        }
+    }
+
+    void record(String timer, String outcome, long nanos) {
+        String name = timer + "." + outcome;
+        Timer t = timers.get(name);
+        if (t == null) {
+            t = timers.computeIfAbsent(name, k -> new Timer());
+        }
+        t.record(nanos);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        timers.forEach((name, timer) -> timer.report("broker." + name + ".", metrics));
+        return metrics;
+    }
+
+    private static class Timer {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS_MS.length];
+
+        Timer() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            for (int i = 0; i < BUCKETS_MS.length; i++) {
+                if (millis <= BUCKETS_MS[i]) {
+                    buckets[i].increment();
+                    return;
+                }
+            }
+        }
+
+        void report(String prefix, List<Metric<?>> metrics) {
+            metrics.add(new Metric<>(prefix + "count", count.sum()));
+            metrics.add(new Metric<>(prefix + "total-ms", TimeUnit.NANOSECONDS.toMillis(totalNanos.sum())));
+            metrics.add(new Metric<>(prefix + "max-ms", TimeUnit.NANOSECONDS.toMillis(maxNanos.getAndSet(0))));
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS_MS.length; i++) {
+                cumulative += buckets[i].sum();
+                metrics.add(new Metric<>(prefix + "le-" + BUCKETS_MS[i] + "ms", cumulative));
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.ecosystem.servicebroker;
+
+import java.util.List;
+
+/**
+ * Picks the host a new service instance's database is created on. The strategy is a bean, so a broker can bring its
+ * own; the built in ones are selected with PLACEMENT_STRATEGY, see {@link LeastLoadedPlacement}.
+ */
+interface PlacementStrategy {
+
+    /**
+     * @param hosts all configured hosts, at least two
+     */
+    PostgresHost choose(List<PostgresHost> hosts);
+}
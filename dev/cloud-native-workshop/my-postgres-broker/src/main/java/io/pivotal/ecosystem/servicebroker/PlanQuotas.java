@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.ecosystem.servicebroker;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The limits a plan puts on its tenants, read from the plan's catalog.json metadata, so one tenant can't take all
+ * of a shared server's connections or memory:
+ * <ul>
+ * <li>CONNECTION_LIMIT: connections to the instance's database, of all its bindings together</li>
+ * <li>BINDING_CONNECTION_LIMIT: connections of each binding's user</li>
+ * <li>STATEMENT_TIMEOUT: longest a statement of a binding's user may run, e.g. "30s"</li>
+ * <li>WORK_MEM: memory a binding's user may use per sort or hash, e.g. "4MB"</li>
+ * </ul>
+ * Limits a plan leaves out are not set; superusers, like the broker's own user, are not limited.
+ */
+class PlanQuotas {
+
+    static final String CONNECTION_LIMIT = "CONNECTION_LIMIT";
+    static final String BINDING_CONNECTION_LIMIT = "BINDING_CONNECTION_LIMIT";
+    static final String STATEMENT_TIMEOUT = "STATEMENT_TIMEOUT";
+    static final String WORK_MEM = "WORK_MEM";
+
+    /**
+     * A number with an optional postgres time or memory unit, safe to put into a statement.
+     */
+    private static final Pattern SETTING_PATTERN = Pattern.compile("^\\d+(us|ms|s|min|h|d|B|kB|MB|GB|TB)?$");
+
+    static final PlanQuotas NONE = of(Collections.emptyMap());
+
+    private final Integer connectionLimit;
+
+    private final Integer bindingConnectionLimit;
+
+    private final String statementTimeout;
+
+    private final String workMem;
+
+    private PlanQuotas(Integer connectionLimit, Integer bindingConnectionLimit, String statementTimeout, String workMem) {
+        this.connectionLimit = connectionLimit;
+        this.bindingConnectionLimit = bindingConnectionLimit;
+        this.statementTimeout = statementTimeout;
+        this.workMem = workMem;
+    }
+
+    static PlanQuotas of(Map<String, Object> metadata) {
+        return new PlanQuotas(limit(metadata, CONNECTION_LIMIT), limit(metadata, BINDING_CONNECTION_LIMIT),
+                setting(metadata, STATEMENT_TIMEOUT), setting(metadata, WORK_MEM));
+    }
+
+    private static Integer limit(Map<String, Object> metadata, String key) {
+        Object value = metadata.get(key);
+        if (value == null) {
+            return null;
+        }
+        try {
+            int limit = Integer.parseInt(value.toString());
+            if (limit >= 0) {
+                return limit;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Plan metadata " + key + " must be a number of connections, not: " + value);
+    }
+
+    private static String setting(Map<String, Object> metadata, String key) {
+        Object value = metadata.get(key);
+        if (value == null) {
+            return null;
+        }
+        if (!SETTING_PATTERN.matcher(value.toString()).matches()) {
+            throw new IllegalArgumentException("Plan metadata " + key + " must be a number with an optional unit, like 30s or 4MB, not: " + value);
+        }
+        return value.toString();
+    }
+
+    Integer getConnectionLimit() {
+        return connectionLimit;
+    }
+
+    Integer getBindingConnectionLimit() {
+        return bindingConnectionLimit;
+    }
+
+    String getStatementTimeout() {
+        return statementTimeout;
+    }
+
+    String getWorkMem() {
+        return workMem;
+    }
+}
@@ -22,8 +22,14 @@ import io.pivotal.ecosystem.servicebroker.model.ServiceBinding;
 import io.pivotal.ecosystem.servicebroker.model.ServiceInstance;
 import io.pivotal.ecosystem.servicebroker.service.DefaultServiceImpl;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+import org.springframework.cloud.servicebroker.model.Plan;
+import org.springframework.cloud.servicebroker.model.ServiceDefinition;
+import org.springframework.cloud.servicebroker.service.CatalogService;
 import org.springframework.stereotype.Service;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -43,15 +49,32 @@ import static io.pivotal.ecosystem.servicebroker.PostgresClient.*;
 @Slf4j
 class PostgresBroker extends DefaultServiceImpl {
 
-    private PostgresClient client;
+    private PostgresHosts hosts;
 
-    private String dbUrl;
+    private ProvisioningOperations operations;
 
+    private DatabasePool pool;
 
-    public PostgresBroker(PostgresClient client, String dbUrl) {
+    private CatalogService catalogService;
+
+    private DatabaseTeardown teardown;
+
+    private boolean async;
+
+    private OperationMetrics metrics;
+
+
+    public PostgresBroker(PostgresHosts hosts, ProvisioningOperations operations, DatabasePool pool,
+                          CatalogService catalogService, DatabaseTeardown teardown, OperationMetrics metrics,
+                          @Value("${BROKER_ASYNC:false}") boolean async) {
         super();
-        this.client = client;
-        this.dbUrl = dbUrl;
+        this.hosts = hosts;
+        this.operations = operations;
+        this.pool = pool;
+        this.catalogService = catalogService;
+        this.teardown = teardown;
+        this.metrics = metrics;
+        this.async = async;
     }
 
     /**
@@ -60,15 +83,67 @@ class PostgresBroker extends DefaultServiceImpl {
      *
      * @param instance service instance data passed in by the cloud connector. Clients can pass additional json
      *                 as part of the create-service request, which will show up as key value pairs in instance.parameters.
+     *                 <p>
+     *                 If the {@link DatabasePool} has a database ready it is renamed and the instance is created
+     *                 right away. Otherwise, in async mode, the database name is recorded and the database is created
+     *                 in the background; the cloud controller polls {@link #lastOperation(ServiceInstance)} for the outcome.
+     *                 <p>
+     *                 Plans with a POSTGRES_TEMPLATE in their catalog metadata clone that database instead, and skip the
+     *                 pool. Clients can name a different template with a POSTGRES_TEMPLATE parameter, as long as it is
+     *                 marked as a template in postgres (datistemplate).
+     *                 <p>
+     *                 With several POSTGRES_HOSTS the database goes to the host the {@link PlacementStrategy} picks, and
+     *                 the host is recorded as POSTGRES_HOST; templates have to exist on every host.
+     *                 <p>
+     *                 The plan's CONNECTION_LIMIT, if any, is put on the database, see {@link PlanQuotas}.
      */
     @Override
     public LastOperation createInstance(ServiceInstance instance) {
+        return metrics.time("create-instance", () -> create(instance));
+    }
+
+    private LastOperation create(ServiceInstance instance) {
         log.info("creating database...");
 
+        PostgresClient client;
+        String db;
+        String template;
+        PlanQuotas quotas;
+        try {
+            quotas = PlanQuotas.of(planMetadata(instance));
+            PostgresHost host = hosts.place();
+            client = host.getClient();
+            db = client.databaseName(instance);
+            if (DatabasePool.isReserved(db)) {
+                throw new ServiceBrokerException("Database names of the form " + DatabasePool.POOL_PREFIX + " followed by 32 hex digits are reserved.");
+            }
+            template = templateName(client, instance);
+            instance.getParameters().put(POSTGRES_HOST_KEY, host.getName());
+            if (template == null && pool.claim(host, db)) {
+                instance.getParameters().put(POSTGRES_DB, db);
+                limitConnections(client, db, quotas);
+                return new LastOperation(LastOperation.CREATE, LastOperation.SUCCEEDED, instance.getId() + " created from pool.");
+            }
+        } catch (Throwable t) {
+            log.error("error creating database.", t);
+            return new LastOperation(LastOperation.CREATE, LastOperation.FAILED, t.getMessage());
+        }
+        instance.getParameters().put(POSTGRES_DB, db);
+        if (template != null) {
+            instance.getParameters().put(POSTGRES_TEMPLATE, template);
+        }
+
+        if (async) {
+            return operations.submit(instance.getId(), LastOperation.CREATE, () -> {
+                client.createDatabase(db, template);
+                limitConnections(client, db, quotas);
+            });
+        }
+
         try {
-            String db = client.createDatabase(instance);
-            log.info("database: " + db + " created.");
-            instance.getParameters().put(POSTGRES_DB, db);
+            client.createDatabase(db, template);
+            limitConnections(client, db, quotas);
+            log.info("database: {} created.", db);
         } catch (Throwable t) {
             log.error("error creating database.", t);
             return new LastOperation(LastOperation.CREATE, LastOperation.FAILED, t.getMessage());
@@ -77,22 +152,64 @@ class PostgresBroker extends DefaultServiceImpl {
         return new LastOperation(LastOperation.CREATE, LastOperation.SUCCEEDED, instance.getId() + " creating.");
     }
 
+    private String templateName(PostgresClient client, ServiceInstance instance) {
+        Object requested = instance.getParameters().get(POSTGRES_TEMPLATE);
+        if (requested != null) {
+            if (!client.isTemplate(requested.toString())) {
+                throw new ServiceBrokerException("Database: " + requested + " is not a template.");
+            }
+            return requested.toString();
+        }
+
+        Object template = planMetadata(instance).get(POSTGRES_TEMPLATE);
+        return template == null ? null : template.toString();
+    }
+
+    private void limitConnections(PostgresClient client, String db, PlanQuotas quotas) {
+        if (quotas.getConnectionLimit() != null) {
+            client.limitConnections(db, quotas.getConnectionLimit());
+        }
+    }
+
+    /**
+     * The catalog.json metadata of the instance's plan, empty if the plan isn't in the catalog.
+     */
+    private Map<String, Object> planMetadata(ServiceInstance instance) {
+        if (instance.getServiceId() == null || instance.getPlanId() == null) {
+            return Collections.emptyMap();
+        }
+        ServiceDefinition service = catalogService.getServiceDefinition(instance.getServiceId());
+        if (service == null) {
+            return Collections.emptyMap();
+        }
+        for (Plan plan : service.getPlans()) {
+            if (plan.getId().equals(instance.getPlanId()) && plan.getMetadata() != null) {
+                return plan.getMetadata();
+            }
+        }
+        return Collections.emptyMap();
+    }
+
     /**
      * Code here will be called during the delete-service instance process. You can use this to de-allocate resources
      * on your underlying service, delete user accounts, destroy environments, etc.
+     * <p>
+     * Apps still connected to the database are disconnected, see {@link DatabaseTeardown}.
      *
      * @param instance service instance data passed in by the cloud connector.
      */
     @Override
     public LastOperation deleteInstance(ServiceInstance instance) {
+        return metrics.time("delete-instance", () -> delete(instance));
+    }
+
+    private LastOperation delete(ServiceInstance instance) {
+        if (async) {
+            return operations.submit(instance.getId(), LastOperation.DELETE, () -> deleteDatabase(instance));
+        }
+
         try {
-            String db = instance.getParameters().get(POSTGRES_DB).toString();
-            String user = instance.getParameters().get(POSTGRES_USER).toString();
-            log.info("deleting database: " + db);
-            client.deleteDatabase(db);
-            log.info("********DELETED database: " + db);
-            client.deleteUserCreds(user);
-            log.info("********DELETED User creds: " + user);
+            deleteDatabase(instance);
         } catch (Throwable t) {
             log.error("error deleting database.", t);
             return new LastOperation(LastOperation.DELETE, LastOperation.FAILED, t.getMessage());
@@ -100,6 +217,14 @@ class PostgresBroker extends DefaultServiceImpl {
         return new LastOperation(LastOperation.DELETE, LastOperation.SUCCEEDED, instance.getId() + " deleting.");
     }
 
+    private void deleteDatabase(ServiceInstance instance) {
+        String db = instance.getParameters().get(POSTGRES_DB).toString();
+        log.info("deleting database: {}", db);
+        Object user = instance.getParameters().get(POSTGRES_USER);
+        teardown.drop(hosts.of(instance.getParameters()).getClient(), db, user == null ? Collections.emptySet() : Collections.singleton(user.toString()));
+        log.info("********DELETED database: {}", db);
+    }
+
     /**
      * Code here will be called during the update-service process. You can use this to modify
      * your service instance.
@@ -118,6 +243,8 @@ class PostgresBroker extends DefaultServiceImpl {
      * <p>
      * Services that do not support binding should set '"bindable": false,' within their catalog.json file. In this case this method
      * can be safely deleted in your implementation.
+     * <p>
+     * The binding's user gets the plan's BINDING_CONNECTION_LIMIT, STATEMENT_TIMEOUT and WORK_MEM.
      *
      * @param instance service instance data passed in by the cloud connector.
      * @param binding  binding data passed in by the cloud connector. Clients can pass additional json
@@ -127,14 +254,20 @@ class PostgresBroker extends DefaultServiceImpl {
      */
     @Override
     public LastOperation createBinding(ServiceInstance instance, ServiceBinding binding) {
+        return metrics.time("bind", () -> bind(instance, binding));
+    }
+
+    private LastOperation bind(ServiceInstance instance, ServiceBinding binding) {
         String db = instance.getParameters().get(POSTGRES_DB).toString();
         binding.getParameters().put(POSTGRES_DB, db);
+        PostgresHost host = hosts.of(instance.getParameters());
+        binding.getParameters().put(POSTGRES_HOST_KEY, host.getName());
 
-        Map<String, String> userCredentials = client.createUserCreds(binding);
+        Map<String, String> userCredentials = host.getClient().createUserCreds(binding, PlanQuotas.of(planMetadata(instance)));
         binding.getParameters().put(POSTGRES_USER, userCredentials.get(POSTGRES_USER));
 
         binding.getParameters().put(POSTGRES_PASSWORD, userCredentials.get(POSTGRES_PASSWORD));
-        log.info("bound app: " + binding.getAppGuid() + " to database: " + db);
+        log.info("bound app: {} to database: {}", binding.getAppGuid(), db);
         return new LastOperation(LastOperation.BIND, LastOperation.SUCCEEDED, "bound.");
     }
 
@@ -146,8 +279,32 @@ class PostgresBroker extends DefaultServiceImpl {
      */
     @Override
     public LastOperation deleteBinding(ServiceInstance instance, ServiceBinding binding) {
-        log.info("unbinding app: " + binding.getAppGuid() + " from database: " + instance.getParameters().get(POSTGRES_DB));
-        return new LastOperation(LastOperation.UNBIND, LastOperation.SUCCEEDED, "bound.");
+        return metrics.time("unbind", () -> unbind(instance, binding));
+    }
+
+    private LastOperation unbind(ServiceInstance instance, ServiceBinding binding) {
+        log.info("unbinding app: {} from database: {}", binding.getAppGuid(), instance.getParameters().get(POSTGRES_DB));
+        Object user = binding.getParameters().get(POSTGRES_USER);
+        if (user != null) {
+            try {
+                hosts.of(instance.getParameters()).getClient().dropUsers(instance.getParameters().get(POSTGRES_DB).toString(), Collections.singleton(user.toString()));
+            } catch (Throwable t) {
+                log.error("error dropping user: {}", user, t);
+                return new LastOperation(LastOperation.UNBIND, LastOperation.FAILED, t.getMessage());
+            }
+        }
+        return new LastOperation(LastOperation.UNBIND, LastOperation.SUCCEEDED, "unbound.");
+    }
+
+    /**
+     * Replaces the binding user's password and returns the binding's new credentials. Apps keep using the old
+     * password until they pick the new credentials up, e.g. on restage.
+     */
+    Map<String, Object> rotateCredentials(ServiceBinding binding) {
+        String password = hosts.of(binding.getParameters()).getClient().rotatePassword(binding.getParameters().get(POSTGRES_USER).toString());
+        binding.getParameters().put(POSTGRES_PASSWORD, password);
+        binding.getCredentials().put(POSTGRES_PASSWORD, password);
+        return binding.getCredentials();
     }
 
     /**
@@ -167,7 +324,7 @@ class PostgresBroker extends DefaultServiceImpl {
         log.info("returning credentials.");
 
         Map<String, Object> m = new HashMap<>();
-        m.put(POSTGRES_URI, dbUrl + "/" + binding.getParameters().get(POSTGRES_DB).toString());
+        m.put(POSTGRES_URI, hosts.of(binding.getParameters()).getUrl() + "/" + binding.getParameters().get(POSTGRES_DB).toString());
 
         m.put(POSTGRES_USER, binding.getParameters().get(POSTGRES_USER));
         m.put(POSTGRES_PASSWORD, binding.getParameters().get(POSTGRES_PASSWORD));
@@ -176,8 +333,38 @@ class PostgresBroker extends DefaultServiceImpl {
         return m;
     }
 
+    /**
+     * Called while an async create or delete is in progress. The operation table is kept in memory, so after a
+     * broker restart the outcome is read from postgres instead: a create succeeded if the database exists, a delete
+     * if it does not. This assumes a single broker instance runs the operations.
+     *
+     * @param instance service instance data passed in by the cloud connector.
+     */
+    @Override
+    public LastOperation lastOperation(ServiceInstance instance) {
+        return metrics.time("last-operation", () -> lastOperationOf(instance));
+    }
+
+    private LastOperation lastOperationOf(ServiceInstance instance) {
+        LastOperation operation = operations.poll(instance.getId());
+        if (operation != null) {
+            return operation;
+        }
+
+        String db = instance.getParameters().get(POSTGRES_DB).toString();
+        boolean succeeded = instance.isCreate() == hosts.of(instance.getParameters()).getClient().checkDatabaseExists(db);
+        log.info("no operation in progress for: {}, database: {} {} in the expected state.", instance.getId(), db, succeeded ? "is" : "is not");
+        return new LastOperation(instance.getLastOperation().getOperation(),
+                succeeded ? LastOperation.SUCCEEDED : LastOperation.FAILED,
+                succeeded ? instance.getId() + " done." : "operation interrupted by a broker restart, please retry.");
+    }
+
+    /**
+     * With BROKER_ASYNC=true, create-service and delete-service return "in progress" right away and run on the
+     * provisioning pool. Bindings stay synchronous: the broker library rejects in progress bind operations.
+     */
     @Override
     public boolean isAsync() {
-        return false;
+        return async;
     }
 }
\ No newline at end of file
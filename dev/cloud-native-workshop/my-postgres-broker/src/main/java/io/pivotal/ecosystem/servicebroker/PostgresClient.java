@@ -21,45 +21,154 @@ import io.pivotal.ecosystem.servicebroker.model.ServiceBinding;
 import io.pivotal.ecosystem.servicebroker.model.ServiceInstance;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+import org.springframework.core.env.Environment;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.stereotype.Repository;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
-@Repository
+/**
+ * Runs the broker's statements against one postgres server; there is one client per host in POSTGRES_HOSTS,
+ * see {@link PostgresHosts}.
+ */
 @Slf4j
 class PostgresClient {
 
     private JdbcTemplate jdbcTemplate;
 
+    /**
+     * Makes the templates for connections to single tenant databases.
+     */
+    private Function<DataSource, JdbcTemplate> tenantJdbcTemplates;
+
+    private TransactionTemplate transactionTemplate;
+
+    private String dbUrl;
+
+    private Environment env;
+
     static final String POSTGRES_DB = "POSTGRES_DB";
+    static final String POSTGRES_TEMPLATE = "POSTGRES_TEMPLATE";
     static final String POSTGRES_USER = "POSTGRES_USER";
     static final String POSTGRES_PASSWORD = "POSTGRES_PASSWORD";
     static final String POSTGRES_HOST_KEY = "POSTGRES_HOST";
+    static final String POSTGRES_HOSTS_KEY = "POSTGRES_HOSTS";
     static final String POSTGRES_PORT_KEY = "POSTGRES_PORT";
 
 
     static final String POSTGRES_URI = "postgresuri";
     static final String POSTGRES_URI_SCHEME = "jdbc:postgresql";
 
+    /**
+     * Comment put on the roles the broker creates, so orphaned ones can be told apart from everyone else's.
+     */
+    private static final String ROLE_COMMENT = "my-postgres-broker";
+    private static final Pattern ROLE_COMMENT_PATTERN = Pattern.compile(ROLE_COMMENT + " db=(\\w+) created=(\\d+)");
+    private static final String GENERATED_USER_PATTERN = "^u[0-9a-f]{32}$";
 
-    PostgresClient(DataSource dataSource) {
-        this.jdbcTemplate = new JdbcTemplate(dataSource);
+
+    PostgresClient(JdbcTemplate jdbcTemplate, Function<DataSource, JdbcTemplate> tenantJdbcTemplates, String dbUrl, Environment env) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tenantJdbcTemplates = tenantJdbcTemplates;
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+        this.dbUrl = dbUrl;
+        this.env = env;
     }
 
     String createDatabase(ServiceInstance instance) {
-        String db = createDbName(instance.getParameters().get(POSTGRES_DB));
-        jdbcTemplate.execute("CREATE DATABASE " + db);
-        log.info("Database: " + db + " created successfully...");
+        String db = databaseName(instance);
+        createDatabase(db);
         return db;
     }
 
+    /**
+     * The name the instance's database gets: the one passed in by the client, or a generated one.
+     */
+    String databaseName(ServiceInstance instance) {
+        return createDbName(instance.getParameters().get(POSTGRES_DB));
+    }
+
+    void createDatabase(String db) {
+        jdbcTemplate.execute("CREATE DATABASE " + checkString(db));
+        log.info("Database: {} created successfully...", db);
+    }
+
+    /**
+     * Clones the template database. Postgres refuses to copy a database others are connected to, so
+     * connections to the template are terminated first.
+     */
+    void createDatabase(String db, String template) {
+        if (template == null) {
+            createDatabase(db);
+            return;
+        }
+        terminateConnections(template);
+        jdbcTemplate.execute("CREATE DATABASE " + checkString(db) + " TEMPLATE " + checkString(template));
+        log.info("Database: {} created successfully from template: {}", db, template);
+    }
+
+    /**
+     * Terminates all other sessions connected to the database in one statement, returns how many there were.
+     */
+    int terminateConnections(String db) {
+        return jdbcTemplate.queryForList("SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE datname = ? AND pid <> pg_backend_pid()", Boolean.class, db).size();
+    }
+
+    /**
+     * Refuses new connections to the database, whatever the privileges of the connecting user (postgres 9.5+).
+     */
+    void blockConnections(String db) {
+        jdbcTemplate.execute("ALTER DATABASE " + checkString(db) + " ALLOW_CONNECTIONS false");
+    }
+
+    /**
+     * Limits the connections to the database, superusers excepted.
+     */
+    void limitConnections(String db, int limit) {
+        jdbcTemplate.execute("ALTER DATABASE " + checkString(db) + " CONNECTION LIMIT " + limit);
+    }
+
+    boolean isTemplate(String db) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM pg_database WHERE datname = ? AND datistemplate", new Object[]{db}, Integer.class) > 0;
+    }
+
     void deleteDatabase(String db) {
-        jdbcTemplate.execute("DROP DATABASE IF EXISTS " + db);
-        log.info("Database: " + db + " deleted successfully...");
+        jdbcTemplate.execute("DROP DATABASE IF EXISTS " + checkString(db));
+        log.info("Database: {} deleted successfully...", db);
+    }
+
+    void renameDatabase(String from, String to) {
+        jdbcTemplate.execute("ALTER DATABASE " + checkString(from) + " RENAME TO " + checkString(to));
+        log.info("Database: {} renamed to: {}", from, to);
+    }
+
+    /**
+     * Sets the database's comment, null removes it.
+     */
+    void commentDatabase(String db, String comment) {
+        jdbcTemplate.execute("COMMENT ON DATABASE " + checkString(db) + " IS "
+                + (comment == null ? "NULL" : "'" + comment.replace("'", "''") + "'"));
+    }
+
+    /**
+     * Databases whose name matches the regular expression and that carry exactly the given comment.
+     */
+    List<String> findDatabases(String namePattern, String comment) {
+        return jdbcTemplate.queryForList("SELECT d.datname FROM pg_database d JOIN pg_shdescription s"
+                        + " ON s.objoid = d.oid AND s.classoid = 'pg_database'::regclass WHERE d.datname ~ ? AND s.description = ?",
+                String.class, namePattern, comment);
     }
 
     boolean checkDatabaseExists(String db) {
@@ -68,6 +177,24 @@ class PostgresClient {
 
     }
 
+    /**
+     * Databases on the server, not counting templates.
+     */
+    long countDatabases() {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM pg_database WHERE NOT datistemplate", Long.class);
+    }
+
+    long countConnections() {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM pg_stat_activity", Long.class);
+    }
+
+    /**
+     * Bytes used by all databases on the server.
+     */
+    long databasesSize() {
+        return jdbcTemplate.queryForObject("SELECT coalesce(sum(pg_database_size(datname)), 0) FROM pg_database", Long.class);
+    }
+
     //todo how to protect dbs etc. from bad actors?
     private String getRandomishId() {
         return clean(UUID.randomUUID().toString());
@@ -112,6 +239,13 @@ class PostgresClient {
     }
 
     Map<String, String> createUserCreds(ServiceBinding binding) {
+        return createUserCreds(binding, PlanQuotas.NONE);
+    }
+
+    /**
+     * Creates the binding's user with the plan's per user limits.
+     */
+    Map<String, String> createUserCreds(ServiceBinding binding, PlanQuotas quotas) {
         String db = binding.getParameters().get(POSTGRES_DB).toString();
         Map<String, String> userCredentials = new HashMap<>();
 
@@ -119,12 +253,23 @@ class PostgresClient {
         userCredentials.put(POSTGRES_USER, createUserId(binding.getParameters().get(POSTGRES_USER)));
         userCredentials.put(POSTGRES_PASSWORD, createPassword(binding.getParameters().get(POSTGRES_PASSWORD)));
         userCredentials.put(POSTGRES_DB, db);
-        log.debug("creds: " + userCredentials.toString());
+        log.debug("creds: {}", userCredentials);
 
-        jdbcTemplate.execute("CREATE USER " + userCredentials.get(POSTGRES_USER) + " WITH PASSWORD '" + userCredentials.get(POSTGRES_PASSWORD) + "'");
-        jdbcTemplate.execute("GRANT ALL PRIVILEGES ON DATABASE " + userCredentials.get(POSTGRES_DB) + " to " + userCredentials.get(POSTGRES_USER));
+        String uid = userCredentials.get(POSTGRES_USER);
+        List<String> statements = new ArrayList<>();
+        statements.add("CREATE USER " + uid + " WITH PASSWORD '" + userCredentials.get(POSTGRES_PASSWORD) + "'"
+                + (quotas.getBindingConnectionLimit() == null ? "" : " CONNECTION LIMIT " + quotas.getBindingConnectionLimit()));
+        statements.add("GRANT ALL PRIVILEGES ON DATABASE " + checkString(db) + " to " + uid);
+        statements.add("COMMENT ON ROLE " + uid + " IS '" + ROLE_COMMENT + " db=" + db + " created=" + System.currentTimeMillis() / 1000 + "'");
+        if (quotas.getStatementTimeout() != null) {
+            statements.add("ALTER ROLE " + uid + " SET statement_timeout = '" + quotas.getStatementTimeout() + "'");
+        }
+        if (quotas.getWorkMem() != null) {
+            statements.add("ALTER ROLE " + uid + " SET work_mem = '" + quotas.getWorkMem() + "'");
+        }
+        batchInTransaction(jdbcTemplate, statements.toArray(new String[0]));
 
-        log.info("Created user: " + userCredentials.get(POSTGRES_USER));
+        log.info("Created user: {}", uid);
         return userCredentials;
     }
 
@@ -132,4 +277,89 @@ class PostgresClient {
         jdbcTemplate.execute("DROP USER IF EXISTS " + uid);
     }
 
+    /**
+     * Drops binding users in one go. Whatever they own in the database is handed over to the broker's user first,
+     * otherwise postgres refuses to drop them; that has to happen on a connection to that database.
+     *
+     * @param db the database the users were bound to, or null if unknown
+     */
+    void dropUsers(String db, Collection<String> uids) {
+        List<String> existing = jdbcTemplate.queryForList("SELECT rolname FROM pg_roles WHERE rolname IN ("
+                + String.join(", ", Collections.nCopies(uids.size(), "?")) + ")", String.class, uids.toArray());
+        if (existing.isEmpty()) {
+            return;
+        }
+        existing.forEach(this::checkString);
+        String roles = String.join(", ", existing);
+
+        if (db != null && checkDatabaseExists(db)) {
+            SingleConnectionDataSource tenant = new SingleConnectionDataSource(dbUrl + "/" + checkString(db),
+                    env.getProperty(POSTGRES_USER), env.getProperty(POSTGRES_PASSWORD), true);
+            try {
+                batchInTransaction(tenantJdbcTemplates.apply(tenant),
+                        "REASSIGN OWNED BY " + roles + " TO " + env.getProperty(POSTGRES_USER),
+                        "DROP OWNED BY " + roles);
+            } finally {
+                tenant.destroy();
+            }
+        }
+        jdbcTemplate.execute("DROP ROLE IF EXISTS " + roles);
+        log.info("Dropped users: {}", roles);
+    }
+
+    /**
+     * Gives the user a new generated password and returns it.
+     */
+    String rotatePassword(String uid) {
+        String password = createPassword(null);
+        jdbcTemplate.execute("ALTER ROLE " + checkString(uid) + " WITH PASSWORD '" + password + "'");
+        log.info("Rotated password of user: {}", uid);
+        return password;
+    }
+
+    /**
+     * Users created by the broker before the given time, with the database they were bound to. Users created before
+     * the broker started commenting them are recognised by their generated name, and their database by its grants.
+     */
+    Map<String, String> findBrokerUsers(long createdBefore) {
+        Map<String, String> users = new HashMap<>();
+        jdbcTemplate.query("SELECT r.rolname, d.description,"
+                        + " (SELECT min(datname) FROM pg_database WHERE datacl::text ~ ('[{,]' || r.rolname || '=')) AS granted"
+                        + " FROM pg_roles r LEFT JOIN pg_shdescription d ON d.objoid = r.oid AND d.classoid = 'pg_authid'::regclass"
+                        + " WHERE d.description LIKE ? OR (d.description IS NULL AND r.rolname ~ ?)",
+                rs -> {
+                    String description = rs.getString(2);
+                    if (description == null) {
+                        users.put(rs.getString(1), rs.getString(3));
+                        return;
+                    }
+                    Matcher m = ROLE_COMMENT_PATTERN.matcher(description);
+                    if (m.matches() && Long.parseLong(m.group(2)) * 1000 < createdBefore) {
+                        users.put(rs.getString(1), m.group(1));
+                    }
+                }, ROLE_COMMENT + " %", GENERATED_USER_PATTERN);
+        return users;
+    }
+
+    /**
+     * Users the broker created for bindings to the database.
+     */
+    List<String> findUsers(String db) {
+        return jdbcTemplate.queryForList("SELECT r.rolname FROM pg_roles r JOIN pg_shdescription d"
+                        + " ON d.objoid = r.oid AND d.classoid = 'pg_authid'::regclass WHERE d.description LIKE ?",
+                String.class, ROLE_COMMENT + " db=" + checkString(db) + " created=%");
+    }
+
+    /**
+     * Runs the statements as one batch in a single transaction: role and privilege changes are transactional in
+     * postgres, so a binding is either fully set up or not at all.
+     */
+    private void batchInTransaction(JdbcTemplate jdbc, String... statements) {
+        transactionTemplate(jdbc).execute(status -> jdbc.batchUpdate(statements));
+    }
+
+    private TransactionTemplate transactionTemplate(JdbcTemplate jdbc) {
+        return jdbc == jdbcTemplate ? transactionTemplate : new TransactionTemplate(new DataSourceTransactionManager(jdbc.getDataSource()));
+    }
+
 }
\ No newline at end of file
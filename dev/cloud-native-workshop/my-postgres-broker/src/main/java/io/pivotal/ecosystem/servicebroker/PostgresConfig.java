@@ -17,7 +17,9 @@
 
 package io.pivotal.ecosystem.servicebroker;
 
-import org.postgresql.ds.PGPoolingDataSource;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.servicebroker.model.BrokerApiVersion;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
@@ -26,6 +28,11 @@ import org.springframework.core.env.Environment;
 import org.springframework.jdbc.core.JdbcTemplate;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
 
 import static io.pivotal.ecosystem.servicebroker.PostgresClient.*;
 
@@ -33,24 +40,111 @@ import static io.pivotal.ecosystem.servicebroker.PostgresClient.*;
 @ComponentScan(basePackages = {"io.pivotal.ecosystem.servicebroker", "io.pivotal.cf.servicebroker", "io.pivotal.ecosystem.sqlserver"})
 public class PostgresConfig {
 
+    static final String ADMIN_DB = "postgres";
+
+    private static final String CREATE_DATABASE_TEMPLATE = "template1";
+
+    /**
+     * Connections are shared by the web threads, the provisioning pool and the database pool refiller, so size
+     * POSTGRES_POOL_SIZE above PROVISIONING_THREADS. Set POSTGRES_LEAK_DETECTION_MS to log connections held longer
+     * than that; leave it off or well above the time a CREATE DATABASE takes.
+     * <p>
+     * This is the pool of the first host, every other host in POSTGRES_HOSTS gets one of the same size.
+     * <p>
+     * The pool connects to POSTGRES_DB, postgres by default. It keeps idle connections open, and postgres refuses to
+     * CREATE DATABASE from template1 while anyone else is connected to it, so template1 can't be used here.
+     */
+    @Bean
+    public DataSource datasource(Environment env, String dbUrl, ConnectionPoolMetrics connectionPoolMetrics) {
+        return connectionPool(env, "postgres", dbUrl, connectionPoolMetrics);
+    }
+
+    private HikariDataSource connectionPool(Environment env, String poolName, String url, ConnectionPoolMetrics connectionPoolMetrics) {
+        String db = env.getProperty(POSTGRES_DB, ADMIN_DB);
+        if (CREATE_DATABASE_TEMPLATE.equalsIgnoreCase(db)) {
+            throw new IllegalStateException(POSTGRES_DB + " must not be " + CREATE_DATABASE_TEMPLATE
+                    + ": new databases are copied from it, which fails while the broker's pool is connected to it. Use " + ADMIN_DB + ".");
+        }
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(poolName);
+        config.setJdbcUrl(url + "/" + db);
+        config.setUsername(env.getProperty(POSTGRES_USER));
+        config.setPassword(env.getProperty(POSTGRES_PASSWORD));
+        config.setMaximumPoolSize(env.getProperty("POSTGRES_POOL_SIZE", Integer.class, 10));
+        config.setMinimumIdle(env.getProperty("POSTGRES_POOL_MIN_IDLE", Integer.class, 2));
+        config.setConnectionTimeout(env.getProperty("POSTGRES_CONNECTION_TIMEOUT_MS", Long.class, 10000L));
+        config.setIdleTimeout(env.getProperty("POSTGRES_IDLE_TIMEOUT_MS", Long.class, 600000L));
+        config.setMaxLifetime(env.getProperty("POSTGRES_MAX_LIFETIME_MS", Long.class, 1800000L));
+        config.setLeakDetectionThreshold(env.getProperty("POSTGRES_LEAK_DETECTION_MS", Long.class, 0L));
+        // the pool doesn't cache statements itself, the driver does per connection
+        config.addDataSourceProperty("preparedStatementCacheQueries", env.getProperty("POSTGRES_STATEMENT_CACHE_QUERIES", "256"));
+        config.addDataSourceProperty("prepareThreshold", env.getProperty("POSTGRES_PREPARE_THRESHOLD", "5"));
+        config.setMetricsTrackerFactory(connectionPoolMetrics);
+        // like the old pool, start even if postgres isn't reachable yet
+        config.setInitializationFailFast(false);
+        return new HikariDataSource(config);
+    }
+
     @Bean
-    public DataSource datasource(Environment env) {
-        PGPoolingDataSource source = new PGPoolingDataSource();
-        source.setServerName(env.getProperty(POSTGRES_HOST_KEY));
-        source.setDatabaseName(env.getProperty(POSTGRES_DB));
-        source.setUser(env.getProperty(POSTGRES_USER));
-        source.setPassword(env.getProperty(POSTGRES_PASSWORD));
-        return source;
+    public ConnectionPoolMetrics connectionPoolMetrics() {
+        return new ConnectionPoolMetrics();
     }
 
     @Bean
-    public JdbcTemplate jdbcTemplate(DataSource datasource) {
-        return new JdbcTemplate(datasource);
+    public JdbcTemplate jdbcTemplate(DataSource datasource, OperationMetrics operationMetrics) {
+        return new TimedJdbcTemplate(datasource, operationMetrics);
     }
 
+    /**
+     * POSTGRES_HOSTS lists the servers to place databases on as host or host:port, comma separated; without it the
+     * broker uses POSTGRES_HOST only. All servers share POSTGRES_USER, POSTGRES_PASSWORD and POSTGRES_DB.
+     */
+    @Bean
+    public PostgresHosts postgresHosts(Environment env, JdbcTemplate jdbcTemplate, ConnectionPoolMetrics connectionPoolMetrics,
+                                       OperationMetrics operationMetrics, PlacementStrategy placementStrategy) {
+        List<String> names = hostNames(env);
+        List<PostgresHost> hosts = new ArrayList<>();
+        List<HikariDataSource> pools = new ArrayList<>();
+        Function<DataSource, JdbcTemplate> tenantJdbcTemplates = tenant -> new TimedJdbcTemplate(tenant, operationMetrics);
+        hosts.add(new PostgresHost(names.get(0),
+                new PostgresClient(jdbcTemplate, tenantJdbcTemplates, POSTGRES_URI_SCHEME + "://" + names.get(0), env)));
+        for (String name : names.subList(1, names.size())) {
+            String url = POSTGRES_URI_SCHEME + "://" + name;
+            HikariDataSource pool = connectionPool(env, "postgres-" + name, url, connectionPoolMetrics);
+            pools.add(pool);
+            hosts.add(new PostgresHost(name, new PostgresClient(new TimedJdbcTemplate(pool, operationMetrics), tenantJdbcTemplates, url, env)));
+        }
+        return new PostgresHosts(hosts, placementStrategy, pools);
+    }
+
+    @Bean
+    public PlacementStrategy placementStrategy(@Value("${PLACEMENT_STRATEGY:databases}") String load,
+                                               @Value("${PLACEMENT_MEASURE_SECONDS:30}") long measureSeconds) {
+        return LeastLoadedPlacement.named(load, measureSeconds);
+    }
+
+    /**
+     * The url of the first host.
+     */
     @Bean
     public String dbUrl(Environment env) {
-        return POSTGRES_URI_SCHEME + "://" + env.getProperty(POSTGRES_HOST_KEY) + ":" + Integer.parseInt(env.getProperty(POSTGRES_PORT_KEY));
+        return POSTGRES_URI_SCHEME + "://" + hostNames(env).get(0);
+    }
+
+    private static List<String> hostNames(Environment env) {
+        String hosts = env.getProperty(POSTGRES_HOSTS_KEY, env.getProperty(POSTGRES_HOST_KEY, ""));
+        int port = Integer.parseInt(env.getProperty(POSTGRES_PORT_KEY, "5432"));
+        Set<String> names = new LinkedHashSet<>();
+        for (String host : hosts.split(",")) {
+            host = host.trim();
+            if (!host.isEmpty()) {
+                names.add(host.contains(":") ? host : host + ":" + port);
+            }
+        }
+        if (names.isEmpty()) {
+            throw new IllegalStateException(POSTGRES_HOST_KEY + " or " + POSTGRES_HOSTS_KEY + " must be set.");
+        }
+        return new ArrayList<>(names);
     }
 
     @Bean
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.ecosystem.servicebroker;
+
+import static io.pivotal.ecosystem.servicebroker.PostgresClient.POSTGRES_URI_SCHEME;
+
+/**
+ * One of the postgres servers the broker places databases on, named host:port as in POSTGRES_HOSTS. The name is
+ * what service instances and bindings record, so it has to stay the same as long as the server holds databases.
+ */
+class PostgresHost {
+
+    private final String name;
+
+    private final String url;
+
+    private final PostgresClient client;
+
+    PostgresHost(String name, PostgresClient client) {
+        this.name = name;
+        this.url = POSTGRES_URI_SCHEME + "://" + name;
+        this.client = client;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * The server's jdbc url, without a database.
+     */
+    String getUrl() {
+        return url;
+    }
+
+    PostgresClient getClient() {
+        return client;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
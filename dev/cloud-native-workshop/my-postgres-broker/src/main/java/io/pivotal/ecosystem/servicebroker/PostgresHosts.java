@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.ecosystem.servicebroker;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.pivotal.ecosystem.servicebroker.PostgresClient.POSTGRES_HOST_KEY;
+
+/**
+ * The postgres servers the broker manages, in POSTGRES_HOSTS order. New databases are placed by the
+ * {@link PlacementStrategy}; service instances and bindings record their host as POSTGRES_HOST. Instances created
+ * before the broker managed several hosts don't, they live on the first host.
+ */
+@Slf4j
+class PostgresHosts implements DisposableBean {
+
+    private final List<PostgresHost> hosts;
+
+    private final Map<String, PostgresHost> hostsByName = new LinkedHashMap<>();
+
+    private final PlacementStrategy placement;
+
+    private final List<? extends Closeable> pools;
+
+    /**
+     * @param pools connection pools of the hosts, closed with the broker
+     */
+    PostgresHosts(List<PostgresHost> hosts, PlacementStrategy placement, List<? extends Closeable> pools) {
+        if (hosts.isEmpty()) {
+            throw new IllegalArgumentException("at least one postgres host is needed.");
+        }
+        this.hosts = Collections.unmodifiableList(new ArrayList<>(hosts));
+        hosts.forEach(host -> hostsByName.put(host.getName(), host));
+        this.placement = placement;
+        this.pools = pools;
+    }
+
+    /**
+     * The host to create a new database on.
+     */
+    PostgresHost place() {
+        return hosts.size() == 1 ? hosts.get(0) : placement.choose(hosts);
+    }
+
+    /**
+     * The host recorded in an instance's or binding's parameters, the first host if none is.
+     */
+    PostgresHost of(Map<String, Object> parameters) {
+        Object name = parameters.get(POSTGRES_HOST_KEY);
+        if (name == null) {
+            return hosts.get(0);
+        }
+        PostgresHost host = hostsByName.get(name.toString());
+        if (host == null) {
+            throw new ServiceBrokerException("Unknown postgres host: " + name + ", it is missing from POSTGRES_HOSTS.");
+        }
+        return host;
+    }
+
+    List<PostgresHost> all() {
+        return hosts;
+    }
+
+    @Override
+    public void destroy() {
+        for (Closeable pool : pools) {
+            try {
+                pool.close();
+            } catch (IOException e) {
+                log.warn("error closing connection pool.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.ecosystem.servicebroker;
+
+import io.pivotal.ecosystem.servicebroker.model.LastOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs create and delete work on a bounded pool and keeps the outcome per service instance until
+ * the cloud controller has polled it. The table lives in memory only; see PostgresBroker.lastOperation
+ * for how operations lost in a restart are resolved.
+ */
+@Component
+@Slf4j
+class ProvisioningOperations implements DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+
+    private final Map<String, LastOperation> operations = new ConcurrentHashMap<>();
+
+    private final OperationMetrics metrics;
+
+    ProvisioningOperations(@Value("${PROVISIONING_THREADS:4}") int threads,
+                           @Value("${PROVISIONING_QUEUE_CAPACITY:100}") int queueCapacity,
+                           OperationMetrics metrics) {
+        this.metrics = metrics;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("provisioning-"));
+    }
+
+    /**
+     * Starts the task in the background and returns the in progress operation, or a failed one if too
+     * many operations are already queued.
+     */
+    LastOperation submit(String instanceId, String operation, Runnable task) {
+        LastOperation inProgress = new LastOperation(operation, LastOperation.IN_PROGRESS, instanceId + " in progress.");
+        operations.put(instanceId, inProgress);
+        try {
+            executor.execute(() -> operations.put(instanceId, run(instanceId, operation, task)));
+        } catch (RejectedExecutionException e) {
+            operations.remove(instanceId);
+            log.warn("rejecting {} of {}, {} operations queued.", operation, instanceId, executor.getQueue().size());
+            return new LastOperation(operation, LastOperation.FAILED, "too many operations in progress, please retry.");
+        }
+        return inProgress;
+    }
+
+    /**
+     * The current state of the instance's operation, or null if none is known. Finished operations are
+     * forgotten once returned.
+     */
+    LastOperation poll(String instanceId) {
+        LastOperation operation = operations.get(instanceId);
+        if (operation != null && !LastOperation.IN_PROGRESS.equals(operation.getState())) {
+            operations.remove(instanceId, operation);
+        }
+        return operation;
+    }
+
+    private LastOperation run(String instanceId, String operation, Runnable task) {
+        long start = System.nanoTime();
+        try {
+            task.run();
+            metrics.record("provisioning." + operation, OperationMetrics.SUCCESS, System.nanoTime() - start);
+            log.info("{} of {} succeeded.", operation, instanceId);
+            return new LastOperation(operation, LastOperation.SUCCEEDED, instanceId + " " + operation + " succeeded.");
+        } catch (Throwable t) {
+            metrics.record("provisioning." + operation, OperationMetrics.ERROR, System.nanoTime() - start);
+            log.error("{} of {} failed.", operation, instanceId, t);
+            return new LastOperation(operation, LastOperation.FAILED, t.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("provisioning operations still running at shutdown.");
+        }
+    }
+}
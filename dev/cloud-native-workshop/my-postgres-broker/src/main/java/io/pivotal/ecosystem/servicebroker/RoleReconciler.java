@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.ecosystem.servicebroker;
+
+import io.pivotal.ecosystem.servicebroker.model.ServiceBinding;
+import io.pivotal.ecosystem.servicebroker.service.ServiceBindingRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.pivotal.ecosystem.servicebroker.PostgresClient.POSTGRES_USER;
+
+/**
+ * Drops users the broker created that no longer belong to a binding, e.g. left over from before unbind dropped
+ * them, or from a broker crash between creating the user and saving the binding. Runs every ROLE_RECONCILE_MINUTES
+ * (0 turns it off) and drops up to ROLE_RECONCILE_BATCH_SIZE users per statement. Users younger than
+ * ROLE_RECONCILE_GRACE_MINUTES are left alone, their binding may not have been saved yet. Each of the POSTGRES_HOSTS
+ * is reconciled in turn.
+ */
+@Component
+@Slf4j
+class RoleReconciler implements PublicMetrics, DisposableBean {
+
+    private final PostgresHosts hosts;
+
+    private final ServiceBindingRepository bindings;
+
+    private final int batchSize;
+
+    private final long graceMillis;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("role-reconciler-"));
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    RoleReconciler(PostgresHosts hosts, ServiceBindingRepository bindings,
+                   @Value("${ROLE_RECONCILE_MINUTES:60}") long intervalMinutes,
+                   @Value("${ROLE_RECONCILE_BATCH_SIZE:100}") int batchSize,
+                   @Value("${ROLE_RECONCILE_GRACE_MINUTES:10}") long graceMinutes) {
+        this.hosts = hosts;
+        this.bindings = bindings;
+        this.batchSize = batchSize;
+        this.graceMillis = TimeUnit.MINUTES.toMillis(graceMinutes);
+        if (intervalMinutes > 0) {
+            scheduler.scheduleWithFixedDelay(this::reconcile, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    void reconcile() {
+        try {
+            Set<String> bound = new HashSet<>();
+            for (ServiceBinding binding : bindings.findAll()) {
+                Object user = binding.getParameters().get(POSTGRES_USER);
+                if (!binding.isDeleted() && user != null) {
+                    bound.add(user.toString());
+                }
+            }
+
+            for (PostgresHost host : hosts.all()) {
+                try {
+                    reconcile(host, bound);
+                } catch (RuntimeException e) {
+                    log.error("error reconciling roles of host: {}", host, e);
+                }
+            }
+            log.info("role reconciliation done, {} bound users, {} orphans dropped so far.", bound.size(), dropped.get());
+        } catch (RuntimeException e) {
+            log.error("error reconciling roles.", e);
+        }
+    }
+
+    private void reconcile(PostgresHost host, Set<String> bound) {
+        PostgresClient client = host.getClient();
+        Map<String, List<String>> orphansByDb = new HashMap<>();
+        client.findBrokerUsers(System.currentTimeMillis() - graceMillis).forEach((user, db) -> {
+            if (!bound.contains(user)) {
+                orphansByDb.computeIfAbsent(db, k -> new ArrayList<>()).add(user);
+            }
+        });
+
+        orphansByDb.forEach((db, users) -> {
+            for (int i = 0; i < users.size(); i += batchSize) {
+                List<String> batch = users.subList(i, Math.min(users.size(), i + batchSize));
+                try {
+                    client.dropUsers(db, batch);
+                    dropped.addAndGet(batch.size());
+                } catch (RuntimeException e) {
+                    failed.addAndGet(batch.size());
+                    log.error("error dropping {} orphaned users of database: {} on host: {}", batch.size(), db, host, e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("broker.roles.dropped", dropped.get()),
+                new Metric<>("broker.roles.failed", failed.get()));
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+}
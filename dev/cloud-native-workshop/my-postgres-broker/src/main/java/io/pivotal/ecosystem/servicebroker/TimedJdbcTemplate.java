@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.ecosystem.servicebroker;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.core.StatementCallback;
+
+import javax.sql.DataSource;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * A JdbcTemplate that times every statement under broker.statements.&lt;kind&gt;, where the kind is taken from the
+ * statement's leading keywords, e.g. create-database or drop-role, and its first table for queries, e.g.
+ * select-pg_roles. Names and values in the statement never end up in the metric names. Batches are timed as a whole.
+ */
+class TimedJdbcTemplate extends JdbcTemplate {
+
+    private final OperationMetrics metrics;
+
+    TimedJdbcTemplate(DataSource dataSource, OperationMetrics metrics) {
+        super(dataSource);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public <T> T execute(StatementCallback<T> action) {
+        return time(action, () -> super.execute(action));
+    }
+
+    @Override
+    public <T> T execute(PreparedStatementCreator psc, PreparedStatementCallback<T> action) {
+        return time(psc, () -> super.execute(psc, action));
+    }
+
+    private <T> T time(Object statement, Supplier<T> call) {
+        // read before running it, a batch reports the statement it is at
+        String sql = statement instanceof SqlProvider ? ((SqlProvider) statement).getSql() : null;
+        long start = System.nanoTime();
+        String outcome = OperationMetrics.ERROR;
+        try {
+            T result = call.get();
+            outcome = OperationMetrics.SUCCESS;
+            return result;
+        } finally {
+            metrics.record("statements." + kind(sql), outcome, System.nanoTime() - start);
+        }
+    }
+
+    static String kind(String sql) {
+        if (sql == null) {
+            return "batch";
+        }
+        String[] words = sql.trim().toLowerCase(Locale.ROOT).split("\\s+");
+        switch (words[0]) {
+            case "create":
+            case "drop":
+            case "alter":
+                return words.length > 1 ? words[0] + "-" + words[1] : words[0];
+            case "comment":
+                return words.length > 2 ? "comment-" + words[2] : words[0];
+            case "select":
+                for (int i = 1; i < words.length - 1; i++) {
+                    if (words[i].equals("from")) {
+                        return "select-" + words[i + 1].replaceAll("[^a-z_]", "");
+                    }
+                }
+                return words[0];
+            default:
+                return words[0].replaceAll("[^a-z_]", "");
+        }
+    }
+}
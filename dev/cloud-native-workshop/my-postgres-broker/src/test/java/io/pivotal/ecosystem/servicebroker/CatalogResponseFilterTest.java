@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.ecosystem.servicebroker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.model.Catalog;
+import org.springframework.cloud.servicebroker.model.Plan;
+import org.springframework.cloud.servicebroker.model.ServiceDefinition;
+import org.springframework.cloud.servicebroker.service.CatalogService;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CatalogResponseFilterTest {
+
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    private Catalog catalog;
+
+    private CatalogResponseFilter filter;
+
+    @Before
+    public void setUp() throws Exception {
+        catalog = new Catalog(Collections.singletonList(new ServiceDefinition("postgres", "postgres", "", true,
+                Collections.singletonList(new Plan("shared", "shared", "")))));
+        CatalogService catalogService = mock(CatalogService.class);
+        when(catalogService.getCatalog()).thenReturn(catalog);
+        filter = new CatalogResponseFilter(catalogService, objectMapper);
+    }
+
+    @Test
+    public void catalogIsServedWithAnETag() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = get(null, chain);
+
+        assertEquals(200, response.getStatus());
+        assertNotNull(response.getHeader("ETag"));
+        assertEquals(objectMapper.writeValueAsString(catalog), response.getContentAsString());
+        assertNull("the controller is not called", chain.getRequest());
+    }
+
+    @Test
+    public void unchangedCatalogIsNotSentAgain() throws Exception {
+        String etag = get(null, new MockFilterChain()).getHeader("ETag");
+
+        MockHttpServletResponse response = get(etag, new MockFilterChain());
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentLength());
+    }
+
+    @Test
+    public void otherRequestsPassThrough() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(new MockHttpServletRequest("GET", "/v2/service_instances/1/last_operation"), new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+    }
+
+    private MockHttpServletResponse get(String ifNoneMatch, MockFilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", CatalogResponseFilter.CATALOG_PATH);
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
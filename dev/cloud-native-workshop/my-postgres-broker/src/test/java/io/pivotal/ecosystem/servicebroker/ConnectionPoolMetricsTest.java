@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.ecosystem.servicebroker;
+
+import com.zaxxer.hikari.metrics.MetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConnectionPoolMetricsTest {
+
+    private final ConnectionPoolMetrics metrics = new ConnectionPoolMetrics();
+
+    @Test
+    public void poolStatsAreReported() {
+        metrics.create("postgres", new PoolStats(0) {
+            @Override
+            protected void update() {
+                totalConnections = 10;
+                activeConnections = 7;
+                idleConnections = 3;
+                pendingThreads = 2;
+            }
+        });
+
+        Map<String, Number> values = values();
+        assertEquals(7, values.get("broker.datasource.active"));
+        assertEquals(3, values.get("broker.datasource.idle"));
+        assertEquals(10, values.get("broker.datasource.total"));
+        assertEquals(2, values.get("broker.datasource.pending"));
+    }
+
+    @Test
+    public void poolsOfSeveralHostsAreSummed() {
+        metrics.create("postgres", stats(10, 7));
+        metrics.create("postgres-db2:5432", stats(4, 1));
+
+        Map<String, Number> values = values();
+        assertEquals(8, values.get("broker.datasource.active"));
+        assertEquals(14, values.get("broker.datasource.total"));
+    }
+
+    @Test
+    public void waitsAndTimeoutsAreCounted() {
+        MetricsTracker tracker = metrics.create("postgres", null);
+        tracker.recordConnectionAcquiredNanos(TimeUnit.MILLISECONDS.toNanos(5));
+        tracker.recordConnectionAcquiredNanos(TimeUnit.MILLISECONDS.toNanos(20));
+        tracker.recordConnectionUsageMillis(100);
+        tracker.recordConnectionTimeout();
+
+        Map<String, Number> values = values();
+        assertEquals(2L, values.get("broker.datasource.acquired"));
+        assertEquals(25L, values.get("broker.datasource.wait-ms"));
+        assertEquals(20L, values.get("broker.datasource.wait-max-ms"));
+        assertEquals(100L, values.get("broker.datasource.usage-ms"));
+        assertEquals(1L, values.get("broker.datasource.timeouts"));
+
+        assertEquals(0L, values().get("broker.datasource.wait-max-ms"));
+    }
+
+    private Map<String, Number> values() {
+        Map<String, Number> values = new HashMap<>();
+        for (Metric<?> metric : metrics.metrics()) {
+            values.put(metric.getName(), metric.getValue());
+        }
+        return values;
+    }
+
+    private PoolStats stats(int total, int active) {
+        return new PoolStats(0) {
+            @Override
+            protected void update() {
+                totalConnections = total;
+                activeConnections = active;
+                idleConnections = total - active;
+            }
+        };
+    }
+}
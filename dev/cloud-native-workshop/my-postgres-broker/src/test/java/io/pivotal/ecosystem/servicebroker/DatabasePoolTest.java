@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.ecosystem.servicebroker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.matches;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.*;
+
+public class DatabasePoolTest {
+
+    private PostgresClient client;
+
+    private PostgresHost host;
+
+    private DatabasePool pool;
+
+    @Before
+    public void setUp() {
+        client = mock(PostgresClient.class);
+        host = new PostgresHost("localhost:5432", client);
+    }
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.destroy();
+        }
+    }
+
+    @Test
+    public void disabledPoolNeverClaims() {
+        pool = new DatabasePool(hosts(host), 0, 0, 60);
+        pool.start();
+
+        assertFalse(pool.claim(host, "testdb"));
+        verifyZeroInteractions(client);
+    }
+
+    @Test
+    public void startFindsAndRefillsThePool() throws Exception {
+        when(client.findDatabases(DatabasePool.POOL_NAME_PATTERN, DatabasePool.POOL_COMMENT)).thenReturn(Collections.singletonList("pool1"));
+        pool = new DatabasePool(hosts(host), 1, 3, 60);
+        pool.start();
+
+        awaitSize(3);
+        verify(client, times(2)).createDatabase(startsWith(DatabasePool.POOL_PREFIX));
+    }
+
+    @Test
+    public void claimRenamesAPooledDatabase() throws Exception {
+        when(client.findDatabases(DatabasePool.POOL_NAME_PATTERN, DatabasePool.POOL_COMMENT)).thenReturn(Arrays.asList("pool1", "pool2"));
+        pool = new DatabasePool(hosts(host), 0, 2, 60);
+        pool.start();
+        awaitSize(2);
+
+        assertTrue(pool.claim(host, "testdb"));
+        verify(client).renameDatabase("pool1", "testdb");
+    }
+
+    @Test
+    public void databasesClaimedElsewhereAreSkipped() throws Exception {
+        when(client.findDatabases(DatabasePool.POOL_NAME_PATTERN, DatabasePool.POOL_COMMENT)).thenReturn(Arrays.asList("pool1", "pool2"));
+        doThrow(new IllegalStateException("does not exist")).when(client).renameDatabase("pool1", "testdb");
+        when(client.checkDatabaseExists("pool1")).thenReturn(false);
+        pool = new DatabasePool(hosts(host), 0, 2, 60);
+        pool.start();
+        awaitSize(2);
+
+        assertTrue(pool.claim(host, "testdb"));
+        verify(client).renameDatabase("pool2", "testdb");
+    }
+
+    @Test
+    public void failedRenameKeepsTheDatabasePooled() throws Exception {
+        when(client.findDatabases(DatabasePool.POOL_NAME_PATTERN, DatabasePool.POOL_COMMENT)).thenReturn(Collections.singletonList("pool1"));
+        doThrow(new IllegalStateException("already exists")).when(client).renameDatabase("pool1", "testdb");
+        when(client.checkDatabaseExists("pool1")).thenReturn(true);
+        pool = new DatabasePool(hosts(host), 0, 1, 60);
+        pool.start();
+        awaitSize(1);
+
+        try {
+            pool.claim(host, "testdb");
+            fail("expected the rename to fail");
+        } catch (IllegalStateException e) {
+            assertEquals(1, pool.size());
+        }
+        verify(client, never()).createDatabase(anyString());
+    }
+
+    @Test
+    public void eachHostHasItsOwnPool() throws Exception {
+        PostgresClient other = mock(PostgresClient.class);
+        PostgresHost otherHost = new PostgresHost("db2:5432", other);
+        when(client.findDatabases(DatabasePool.POOL_NAME_PATTERN, DatabasePool.POOL_COMMENT)).thenReturn(Collections.singletonList("pool1"));
+        pool = new DatabasePool(hosts(host, otherHost), 0, 1, 60);
+        pool.start();
+        awaitSize(2);
+
+        assertTrue(pool.claim(otherHost, "testdb"));
+        verify(other).renameDatabase(startsWith(DatabasePool.POOL_PREFIX), eq("testdb"));
+        verify(client, never()).renameDatabase(anyString(), anyString());
+    }
+
+    @Test
+    public void poolNamesAreReserved() {
+        assertTrue(DatabasePool.isReserved("pool0123456789abcdef0123456789abcdef"));
+        assertTrue(DatabasePool.isReserved("POOL0123456789ABCDEF0123456789ABCDEF"));
+        assertFalse(DatabasePool.isReserved("pool_prod"));
+        assertFalse(DatabasePool.isReserved("poolside"));
+        assertFalse(DatabasePool.isReserved("testdb"));
+    }
+
+    @Test
+    public void refilledDatabasesAreMarked() throws Exception {
+        pool = new DatabasePool(hosts(host), 0, 2, 60);
+        pool.start();
+        awaitSize(2);
+
+        verify(client, times(2)).commentDatabase(matches(DatabasePool.POOL_NAME_PATTERN), eq(DatabasePool.POOL_COMMENT));
+    }
+
+    @Test
+    public void databasesThatCannotBeMarkedAreDropped() throws Exception {
+        doThrow(new IllegalStateException("permission denied")).when(client).commentDatabase(anyString(), eq(DatabasePool.POOL_COMMENT));
+        pool = new DatabasePool(hosts(host), 0, 1, 60);
+        pool.start();
+
+        verify(client, timeout(2000)).deleteDatabase(matches(DatabasePool.POOL_NAME_PATTERN));
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void claimedDatabasesLoseTheMark() throws Exception {
+        when(client.findDatabases(DatabasePool.POOL_NAME_PATTERN, DatabasePool.POOL_COMMENT)).thenReturn(Collections.singletonList("pool1"));
+        pool = new DatabasePool(hosts(host), 0, 1, 60);
+        pool.start();
+        awaitSize(1);
+
+        assertTrue(pool.claim(host, "testdb"));
+        verify(client).commentDatabase("testdb", null);
+    }
+
+    private PostgresHosts hosts(PostgresHost... hosts) {
+        return new PostgresHosts(Arrays.asList(hosts), null, Collections.emptyList());
+    }
+
+    private void awaitSize(int size) throws InterruptedException {
+        for (int i = 0; i < 100 && pool.size() != size; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(size, pool.size());
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.ecosystem.servicebroker;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class DatabaseTeardownTest {
+
+    private PostgresClient client;
+
+    @Before
+    public void setUp() {
+        client = mock(PostgresClient.class);
+        when(client.checkDatabaseExists("testdb")).thenReturn(true);
+    }
+
+    @Test
+    public void connectionsAreBlockedAndTerminatedBeforeTheDrop() {
+        when(client.findUsers("testdb")).thenReturn(Arrays.asList("u1", "u2"));
+
+        new DatabaseTeardown(1, 3, 0).drop(client, "testdb", Collections.singleton("legacy"));
+
+        InOrder inOrder = inOrder(client);
+        inOrder.verify(client).blockConnections("testdb");
+        inOrder.verify(client).terminateConnections("testdb");
+        inOrder.verify(client).deleteDatabase("testdb");
+        inOrder.verify(client).dropUsers(null, new HashSet<>(Arrays.asList("legacy", "u1", "u2")));
+    }
+
+    @Test
+    public void dropIsRetriedAfterTerminatingAgain() {
+        doThrow(new IllegalStateException("database \"testdb\" is being accessed by other users"))
+                .doNothing()
+                .when(client).deleteDatabase("testdb");
+
+        DatabaseTeardown teardown = new DatabaseTeardown(1, 3, 0);
+        teardown.drop(client, "testdb", Collections.emptySet());
+
+        verify(client, times(2)).terminateConnections("testdb");
+        verify(client, times(2)).deleteDatabase("testdb");
+        verify(client, never()).dropUsers(anyString(), anyCollectionOf(String.class));
+    }
+
+    @Test
+    public void retriesAreBounded() {
+        doThrow(new IllegalStateException("database \"testdb\" is being accessed by other users")).when(client).deleteDatabase("testdb");
+
+        try {
+            new DatabaseTeardown(1, 3, 0).drop(client, "testdb", Collections.emptySet());
+            fail("expected the drop to fail");
+        } catch (IllegalStateException e) {
+            verify(client, times(3)).deleteDatabase("testdb");
+        }
+    }
+
+    @Test
+    public void missingDatabaseOnlyDropsTheUsers() {
+        new DatabaseTeardown(1, 3, 0).drop(client, "gone", Collections.singleton("u1"));
+
+        verify(client, never()).deleteDatabase(anyString());
+        verify(client).dropUsers(null, Collections.singleton("u1"));
+    }
+
+    @Test
+    public void parallelismIsLimited() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(8);
+        when(client.checkDatabaseExists(anyString())).thenReturn(true);
+        doAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            return null;
+        }).when(client).deleteDatabase(anyString());
+
+        DatabaseTeardown teardown = new DatabaseTeardown(2, 1, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            String db = "db" + i;
+            executor.execute(() -> {
+                teardown.drop(client, db, Collections.emptySet());
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(2, maxRunning.get());
+    }
+}
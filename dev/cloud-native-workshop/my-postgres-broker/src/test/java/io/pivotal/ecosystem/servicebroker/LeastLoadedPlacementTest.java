@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.ecosystem.servicebroker;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static io.pivotal.ecosystem.servicebroker.PostgresClient.POSTGRES_HOST_KEY;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class LeastLoadedPlacementTest {
+
+    private PostgresClient client1;
+
+    private PostgresClient client2;
+
+    private PostgresHosts hosts;
+
+    @Before
+    public void setUp() {
+        client1 = mock(PostgresClient.class);
+        client2 = mock(PostgresClient.class);
+        hosts = new PostgresHosts(Arrays.asList(new PostgresHost("db1:5432", client1), new PostgresHost("db2:5432", client2)),
+                LeastLoadedPlacement.named("databases", 60), Collections.emptyList());
+    }
+
+    @Test
+    public void hostWithFewestDatabasesIsChosen() {
+        when(client1.countDatabases()).thenReturn(12L);
+        when(client2.countDatabases()).thenReturn(7L);
+
+        assertEquals("db2:5432", hosts.place().getName());
+    }
+
+    @Test
+    public void unreachableHostsAreSkipped() {
+        when(client1.countDatabases()).thenReturn(12L);
+        when(client2.countDatabases()).thenThrow(new IllegalStateException("connection refused"));
+
+        assertEquals("db1:5432", hosts.place().getName());
+    }
+
+    @Test
+    public void measurementsAreKeptAndPlacedDatabasesCounted() {
+        when(client1.countDatabases()).thenReturn(10L);
+        when(client2.countDatabases()).thenReturn(11L);
+
+        assertEquals("db1:5432", hosts.place().getName());
+        assertEquals("db1:5432", hosts.place().getName());
+        assertEquals("db2:5432", hosts.place().getName());
+        verify(client1).countDatabases();
+        verify(client2).countDatabases();
+    }
+
+    @Test
+    public void unreachableHostsAreNotMeasuredOnEveryPlacement() {
+        when(client1.countDatabases()).thenReturn(12L);
+        when(client2.countDatabases()).thenThrow(new IllegalStateException("connection timed out"));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("db1:5432", hosts.place().getName());
+        }
+        verify(client2).countDatabases();
+    }
+
+    @Test
+    public void oldMeasurementsAreRetakenInTheBackground() throws InterruptedException {
+        PostgresHosts remeasured = new PostgresHosts(Arrays.asList(new PostgresHost("db1:5432", client1), new PostgresHost("db2:5432", client2)),
+                LeastLoadedPlacement.named("connections", 0), Collections.emptyList());
+        when(client1.countConnections()).thenReturn(5L);
+        when(client2.countConnections()).thenReturn(9L);
+        assertEquals("db1:5432", remeasured.place().getName());
+
+        when(client1.countConnections()).thenReturn(20L);
+        String chosen = remeasured.place().getName();
+        for (int i = 0; i < 100 && !"db2:5432".equals(chosen); i++) {
+            Thread.sleep(20);
+            chosen = remeasured.place().getName();
+        }
+        assertEquals("db2:5432", chosen);
+    }
+
+    @Test(expected = ServiceBrokerException.class)
+    public void placementFailsWithoutReachableHosts() {
+        when(client1.countDatabases()).thenThrow(new IllegalStateException("connection refused"));
+        when(client2.countDatabases()).thenThrow(new IllegalStateException("connection refused"));
+
+        hosts.place();
+    }
+
+    @Test
+    public void singleHostIsNotMeasured() {
+        PostgresHosts single = new PostgresHosts(Collections.singletonList(new PostgresHost("db1:5432", client1)),
+                LeastLoadedPlacement.named("disk", 60), Collections.emptyList());
+
+        assertEquals("db1:5432", single.place().getName());
+        verifyZeroInteractions(client1);
+    }
+
+    @Test
+    public void instancesWithoutAHostLiveOnTheFirstOne() {
+        assertEquals("db1:5432", hosts.of(Collections.emptyMap()).getName());
+        assertEquals("db2:5432", hosts.of(Collections.singletonMap(POSTGRES_HOST_KEY, "db2:5432")).getName());
+    }
+
+    @Test(expected = ServiceBrokerException.class)
+    public void unknownHostsAreRejected() {
+        hosts.of(Collections.singletonMap(POSTGRES_HOST_KEY, "db3:5432"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownStrategiesAreRejected() {
+        LeastLoadedPlacement.named("random", 60);
+    }
+}
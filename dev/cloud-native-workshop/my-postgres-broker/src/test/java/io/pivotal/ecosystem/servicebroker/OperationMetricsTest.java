@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.ecosystem.servicebroker;
+
+import io.pivotal.ecosystem.servicebroker.model.LastOperation;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class OperationMetricsTest {
+
+    private final OperationMetrics metrics = new OperationMetrics();
+
+    @Test
+    public void operationsAreTimedByOutcome() {
+        metrics.time("create-instance", () -> new LastOperation(LastOperation.CREATE, LastOperation.SUCCEEDED, "created."));
+        metrics.time("create-instance", () -> new LastOperation(LastOperation.CREATE, LastOperation.IN_PROGRESS, "creating."));
+        try {
+            metrics.time("bind", () -> {
+                throw new IllegalStateException("role exists");
+            });
+            fail("expected the exception to be rethrown");
+        } catch (IllegalStateException e) {
+            // timed as an error
+        }
+
+        Map<String, Number> values = values();
+        assertEquals(1L, values.get("broker.operations.create-instance.succeeded.count"));
+        assertEquals(1L, values.get("broker.operations.create-instance.in-progress.count"));
+        assertEquals(1L, values.get("broker.operations.bind.error.count"));
+    }
+
+    @Test
+    public void latenciesAreBucketed() {
+        metrics.record("statements.create-database", OperationMetrics.SUCCESS, TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.record("statements.create-database", OperationMetrics.SUCCESS, TimeUnit.MILLISECONDS.toNanos(80));
+        metrics.record("statements.create-database", OperationMetrics.SUCCESS, TimeUnit.SECONDS.toNanos(30));
+
+        Map<String, Number> values = values();
+        String prefix = "broker.statements.create-database.success.";
+        assertEquals(3L, values.get(prefix + "count"));
+        assertEquals(30085L, values.get(prefix + "total-ms"));
+        assertEquals(30000L, values.get(prefix + "max-ms"));
+        assertEquals(1L, values.get(prefix + "le-10ms"));
+        assertEquals(2L, values.get(prefix + "le-100ms"));
+        assertEquals(2L, values.get(prefix + "le-10000ms"));
+
+        assertEquals(0L, values().get(prefix + "max-ms"));
+    }
+
+    private Map<String, Number> values() {
+        Map<String, Number> values = new HashMap<>();
+        for (Metric<?> metric : metrics.metrics()) {
+            values.put(metric.getName(), metric.getValue());
+        }
+        return values;
+    }
+}
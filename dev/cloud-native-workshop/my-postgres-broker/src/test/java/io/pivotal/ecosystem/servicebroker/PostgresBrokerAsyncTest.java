@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.ecosystem.servicebroker;
+
+import io.pivotal.ecosystem.servicebroker.model.LastOperation;
+import io.pivotal.ecosystem.servicebroker.model.ServiceInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.service.CatalogService;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+
+import static io.pivotal.ecosystem.servicebroker.PostgresClient.POSTGRES_DB;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class PostgresBrokerAsyncTest {
+
+    private PostgresClient client;
+
+    private ProvisioningOperations operations;
+
+    private PostgresBroker broker;
+
+    private ServiceInstance instance;
+
+    @Before
+    public void setUp() {
+        client = mock(PostgresClient.class);
+        when(client.databaseName(any(ServiceInstance.class))).thenReturn("testdb");
+        OperationMetrics metrics = new OperationMetrics();
+        operations = new ProvisioningOperations(1, 1, metrics);
+        PostgresHosts hosts = new PostgresHosts(Collections.singletonList(new PostgresHost("localhost:5432", client)), null, Collections.emptyList());
+        broker = new PostgresBroker(hosts, operations, new DatabasePool(hosts, 0, 0, 60), mock(CatalogService.class),
+                new DatabaseTeardown(1, 1, 0), metrics, true);
+
+        instance = new ServiceInstance(new CreateServiceInstanceRequest());
+        instance.setId("instance1");
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        operations.destroy();
+    }
+
+    @Test
+    public void createRunsInTheBackground() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(client).createDatabase(anyString(), any());
+
+        LastOperation created = broker.createInstance(instance);
+        assertEquals(LastOperation.IN_PROGRESS, created.getState());
+        assertEquals("testdb", instance.getParameters().get(POSTGRES_DB));
+        instance.setLastOperation(created);
+        assertEquals(LastOperation.IN_PROGRESS, broker.lastOperation(instance).getState());
+
+        release.countDown();
+        assertEquals(LastOperation.SUCCEEDED, awaitDone(instance).getState());
+        verify(client).createDatabase("testdb", null);
+    }
+
+    @Test
+    public void failedCreateIsReported() throws Exception {
+        doThrow(new IllegalStateException("no space left")).when(client).createDatabase(anyString(), any());
+
+        instance.setLastOperation(broker.createInstance(instance));
+
+        LastOperation done = awaitDone(instance);
+        assertEquals(LastOperation.FAILED, done.getState());
+        assertEquals("no space left", done.getDescription());
+    }
+
+    @Test
+    public void operationsBeyondTheQueueAreRejected() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(client).createDatabase(anyString(), any());
+
+        assertEquals(LastOperation.IN_PROGRESS, broker.createInstance(instanceWithId("a")).getState());
+        // the single thread may not have taken the first task off the queue yet
+        LastOperation second = broker.createInstance(instanceWithId("b"));
+        LastOperation third = broker.createInstance(instanceWithId("c"));
+        assertTrue(LastOperation.FAILED.equals(second.getState()) || LastOperation.FAILED.equals(third.getState()));
+
+        release.countDown();
+    }
+
+    @Test
+    public void lostOperationsAreResolvedFromPostgres() {
+        instance.getParameters().put(POSTGRES_DB, "testdb");
+        instance.setLastOperation(new LastOperation(LastOperation.CREATE, LastOperation.IN_PROGRESS, "creating."));
+
+        when(client.checkDatabaseExists("testdb")).thenReturn(true);
+        assertEquals(LastOperation.SUCCEEDED, broker.lastOperation(instance).getState());
+
+        when(client.checkDatabaseExists("testdb")).thenReturn(false);
+        assertEquals(LastOperation.FAILED, broker.lastOperation(instance).getState());
+
+        instance.setLastOperation(new LastOperation(LastOperation.DELETE, LastOperation.IN_PROGRESS, "deleting."));
+        assertEquals(LastOperation.SUCCEEDED, broker.lastOperation(instance).getState());
+    }
+
+    private ServiceInstance instanceWithId(String id) {
+        ServiceInstance instance = new ServiceInstance(new CreateServiceInstanceRequest());
+        instance.setId(id);
+        return instance;
+    }
+
+    private LastOperation awaitDone(ServiceInstance instance) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            LastOperation operation = broker.lastOperation(instance);
+            if (!LastOperation.IN_PROGRESS.equals(operation.getState())) {
+                return operation;
+            }
+            Thread.sleep(50);
+        }
+        fail("operation did not finish");
+        return null;
+    }
+}
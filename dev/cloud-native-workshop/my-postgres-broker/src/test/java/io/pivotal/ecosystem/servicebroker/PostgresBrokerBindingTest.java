@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.ecosystem.servicebroker;
+
+import io.pivotal.ecosystem.servicebroker.model.LastOperation;
+import io.pivotal.ecosystem.servicebroker.model.ServiceBinding;
+import io.pivotal.ecosystem.servicebroker.model.ServiceInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.service.CatalogService;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static io.pivotal.ecosystem.servicebroker.PostgresClient.*;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class PostgresBrokerBindingTest {
+
+    private PostgresClient client;
+
+    private ProvisioningOperations operations;
+
+    private PostgresBroker broker;
+
+    private ServiceInstance instance;
+
+    private ServiceBinding binding;
+
+    @Before
+    public void setUp() {
+        client = mock(PostgresClient.class);
+        OperationMetrics metrics = new OperationMetrics();
+        operations = new ProvisioningOperations(1, 1, metrics);
+        PostgresHosts hosts = new PostgresHosts(Collections.singletonList(new PostgresHost("localhost:5432", client)), null, Collections.emptyList());
+        broker = new PostgresBroker(hosts, operations, new DatabasePool(hosts, 0, 0, 60), mock(CatalogService.class),
+                new DatabaseTeardown(1, 1, 0), metrics, false);
+
+        instance = new ServiceInstance(new CreateServiceInstanceRequest());
+        instance.getParameters().put(POSTGRES_DB, "testdb");
+        binding = new ServiceBinding(new CreateServiceInstanceBindingRequest());
+        binding.getParameters().put(POSTGRES_USER, "u1");
+        binding.getParameters().put(POSTGRES_PASSWORD, "P1");
+        binding.getCredentials().put(POSTGRES_USER, "u1");
+        binding.getCredentials().put(POSTGRES_PASSWORD, "P1");
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        operations.destroy();
+    }
+
+    @Test
+    public void unbindDropsTheUser() {
+        assertEquals(LastOperation.SUCCEEDED, broker.deleteBinding(instance, binding).getState());
+        verify(client).dropUsers("testdb", Collections.singleton("u1"));
+    }
+
+    @Test
+    public void failedDropFailsTheUnbind() {
+        doThrow(new IllegalStateException("role is in use")).when(client).dropUsers(anyString(), anyCollectionOf(String.class));
+
+        LastOperation unbound = broker.deleteBinding(instance, binding);
+        assertEquals(LastOperation.FAILED, unbound.getState());
+        assertEquals("role is in use", unbound.getDescription());
+    }
+
+    @Test
+    public void rotationReplacesThePassword() {
+        when(client.rotatePassword("u1")).thenReturn("P2");
+
+        Map<String, Object> credentials = broker.rotateCredentials(binding);
+        assertEquals("P2", credentials.get(POSTGRES_PASSWORD));
+        assertEquals("u1", credentials.get(POSTGRES_USER));
+        assertEquals("P2", binding.getParameters().get(POSTGRES_PASSWORD));
+    }
+}
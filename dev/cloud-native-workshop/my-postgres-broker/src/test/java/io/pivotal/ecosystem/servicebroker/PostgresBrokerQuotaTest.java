@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.ecosystem.servicebroker;
+
+import io.pivotal.ecosystem.servicebroker.model.LastOperation;
+import io.pivotal.ecosystem.servicebroker.model.ServiceBinding;
+import io.pivotal.ecosystem.servicebroker.model.ServiceInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.Plan;
+import org.springframework.cloud.servicebroker.model.ServiceDefinition;
+import org.springframework.cloud.servicebroker.service.CatalogService;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.pivotal.ecosystem.servicebroker.PlanQuotas.*;
+import static io.pivotal.ecosystem.servicebroker.PostgresClient.*;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class PostgresBrokerQuotaTest {
+
+    private PostgresClient client;
+
+    private ProvisioningOperations operations;
+
+    private PostgresBroker broker;
+
+    @Before
+    public void setUp() {
+        client = mock(PostgresClient.class);
+        when(client.databaseName(any(ServiceInstance.class))).thenReturn("testdb");
+        Map<String, String> userCredentials = new HashMap<>();
+        userCredentials.put(POSTGRES_USER, "u1");
+        userCredentials.put(POSTGRES_PASSWORD, "P1");
+        when(client.createUserCreds(any(ServiceBinding.class), any(PlanQuotas.class))).thenReturn(userCredentials);
+
+        Map<String, Object> small = new HashMap<>();
+        small.put(CONNECTION_LIMIT, 40);
+        small.put(BINDING_CONNECTION_LIMIT, 20);
+        small.put(STATEMENT_TIMEOUT, "30s");
+        small.put(WORK_MEM, "4MB");
+        CatalogService catalogService = mock(CatalogService.class);
+        when(catalogService.getServiceDefinition("postgres")).thenReturn(new ServiceDefinition("postgres", "postgres", "", true,
+                Arrays.asList(new Plan("unlimited", "unlimited", ""),
+                        new Plan("small", "small", "", small),
+                        new Plan("bad", "bad", "", Collections.singletonMap(STATEMENT_TIMEOUT, "1s'; DROP ROLE postgres; --")))));
+
+        PostgresHosts hosts = new PostgresHosts(Collections.singletonList(new PostgresHost("localhost:5432", client)), null, Collections.emptyList());
+        OperationMetrics metrics = new OperationMetrics();
+        operations = new ProvisioningOperations(1, 1, metrics);
+        broker = new PostgresBroker(hosts, operations, new DatabasePool(hosts, 0, 0, 60), catalogService,
+                new DatabaseTeardown(1, 1, 0), metrics, false);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        operations.destroy();
+    }
+
+    @Test
+    public void planConnectionLimitIsPutOnTheDatabase() {
+        assertEquals(LastOperation.SUCCEEDED, broker.createInstance(instance("small")).getState());
+        verify(client).createDatabase("testdb", null);
+        verify(client).limitConnections("testdb", 40);
+    }
+
+    @Test
+    public void plansWithoutQuotasLeaveTheDatabaseUnlimited() {
+        assertEquals(LastOperation.SUCCEEDED, broker.createInstance(instance("unlimited")).getState());
+        verify(client, never()).limitConnections(anyString(), anyInt());
+    }
+
+    @Test
+    public void bindingUsersGetThePlansQuotas() {
+        ServiceInstance instance = instance("small");
+        instance.getParameters().put(POSTGRES_DB, "testdb");
+
+        broker.createBinding(instance, new ServiceBinding(new CreateServiceInstanceBindingRequest()));
+
+        ArgumentCaptor<PlanQuotas> quotas = ArgumentCaptor.forClass(PlanQuotas.class);
+        verify(client).createUserCreds(any(ServiceBinding.class), quotas.capture());
+        assertEquals(Integer.valueOf(20), quotas.getValue().getBindingConnectionLimit());
+        assertEquals("30s", quotas.getValue().getStatementTimeout());
+        assertEquals("4MB", quotas.getValue().getWorkMem());
+    }
+
+    @Test
+    public void malformedQuotasFailTheCreate() {
+        LastOperation created = broker.createInstance(instance("bad"));
+        assertEquals(LastOperation.FAILED, created.getState());
+        verify(client, never()).createDatabase(anyString(), anyString());
+    }
+
+    private ServiceInstance instance(String planId) {
+        ServiceInstance instance = new ServiceInstance(new CreateServiceInstanceRequest());
+        instance.setId("instance1");
+        instance.setServiceId("postgres");
+        instance.setPlanId(planId);
+        return instance;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.ecosystem.servicebroker;
+
+import io.pivotal.ecosystem.servicebroker.model.LastOperation;
+import io.pivotal.ecosystem.servicebroker.model.ServiceBinding;
+import io.pivotal.ecosystem.servicebroker.model.ServiceInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.service.CatalogService;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.pivotal.ecosystem.servicebroker.PostgresClient.*;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class PostgresBrokerShardingTest {
+
+    private PostgresClient client1;
+
+    private PostgresClient client2;
+
+    private ProvisioningOperations operations;
+
+    private PostgresBroker broker;
+
+    @Before
+    public void setUp() {
+        client1 = mock(PostgresClient.class);
+        client2 = mock(PostgresClient.class);
+        when(client2.databaseName(any(ServiceInstance.class))).thenReturn("testdb");
+        Map<String, String> userCredentials = new HashMap<>();
+        userCredentials.put(POSTGRES_USER, "u1");
+        userCredentials.put(POSTGRES_PASSWORD, "P1");
+        when(client2.createUserCreds(any(ServiceBinding.class), any(PlanQuotas.class))).thenReturn(userCredentials);
+
+        PostgresHosts hosts = new PostgresHosts(Arrays.asList(new PostgresHost("db1:5432", client1), new PostgresHost("db2:5433", client2)),
+                all -> all.get(1), Collections.emptyList());
+        OperationMetrics metrics = new OperationMetrics();
+        operations = new ProvisioningOperations(1, 1, metrics);
+        broker = new PostgresBroker(hosts, operations, new DatabasePool(hosts, 0, 0, 60), mock(CatalogService.class),
+                new DatabaseTeardown(1, 1, 0), metrics, false);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        operations.destroy();
+    }
+
+    @Test
+    public void instancesLiveOnThePlacedHost() {
+        ServiceInstance instance = new ServiceInstance(new CreateServiceInstanceRequest());
+        assertEquals(LastOperation.SUCCEEDED, broker.createInstance(instance).getState());
+        assertEquals("db2:5433", instance.getParameters().get(POSTGRES_HOST_KEY));
+        verify(client2).createDatabase("testdb", null);
+
+        ServiceBinding binding = new ServiceBinding(new CreateServiceInstanceBindingRequest());
+        binding.setId("binding1");
+        broker.createBinding(instance, binding);
+        assertEquals("jdbc:postgresql://db2:5433/testdb", broker.getCredentials(instance, binding).get(POSTGRES_URI));
+
+        when(client2.checkDatabaseExists("testdb")).thenReturn(true);
+        broker.deleteInstance(instance);
+        verify(client2).deleteDatabase("testdb");
+        verify(client1, never()).createDatabase(anyString(), any());
+        verify(client1, never()).deleteDatabase(anyString());
+    }
+
+    @Test
+    public void instancesWithoutAHostLiveOnTheFirstOne() {
+        ServiceInstance instance = new ServiceInstance(new CreateServiceInstanceRequest());
+        instance.getParameters().put(POSTGRES_DB, "legacydb");
+        ServiceBinding binding = new ServiceBinding(new CreateServiceInstanceBindingRequest());
+        binding.getParameters().put(POSTGRES_DB, "legacydb");
+
+        assertEquals("jdbc:postgresql://db1:5432/legacydb", broker.getCredentials(instance, binding).get(POSTGRES_URI));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.ecosystem.servicebroker;
+
+import io.pivotal.ecosystem.servicebroker.model.LastOperation;
+import io.pivotal.ecosystem.servicebroker.model.ServiceInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.Plan;
+import org.springframework.cloud.servicebroker.model.ServiceDefinition;
+import org.springframework.cloud.servicebroker.service.CatalogService;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static io.pivotal.ecosystem.servicebroker.PostgresClient.POSTGRES_DB;
+import static io.pivotal.ecosystem.servicebroker.PostgresClient.POSTGRES_TEMPLATE;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class PostgresBrokerTemplateTest {
+
+    private PostgresClient client;
+
+    private ProvisioningOperations operations;
+
+    private DatabasePool pool;
+
+    private PostgresBroker broker;
+
+    @Before
+    public void setUp() {
+        client = mock(PostgresClient.class);
+        when(client.databaseName(any(ServiceInstance.class))).thenReturn("testdb");
+        when(client.findDatabases(DatabasePool.POOL_NAME_PATTERN, DatabasePool.POOL_COMMENT)).thenReturn(Collections.singletonList("pool1"));
+
+        CatalogService catalogService = mock(CatalogService.class);
+        when(catalogService.getServiceDefinition("postgres")).thenReturn(new ServiceDefinition("postgres", "postgres", "", true,
+                Arrays.asList(new Plan("shared", "shared", ""),
+                        new Plan("seeded", "seeded", "", Collections.singletonMap(POSTGRES_TEMPLATE, "golden")))));
+
+        OperationMetrics metrics = new OperationMetrics();
+        operations = new ProvisioningOperations(1, 1, metrics);
+        PostgresHosts hosts = new PostgresHosts(Collections.singletonList(new PostgresHost("localhost:5432", client)), null, Collections.emptyList());
+        pool = spy(new DatabasePool(hosts, 0, 1, 60));
+        broker = new PostgresBroker(hosts, operations, pool, catalogService, new DatabaseTeardown(1, 1, 0), metrics, false);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        pool.destroy();
+        operations.destroy();
+    }
+
+    @Test
+    public void planTemplateIsClonedInsteadOfClaimingFromThePool() {
+        ServiceInstance instance = instance("seeded");
+
+        assertEquals(LastOperation.SUCCEEDED, broker.createInstance(instance).getState());
+        verify(client).createDatabase("testdb", "golden");
+        verify(pool, never()).claim(any(PostgresHost.class), anyString());
+        assertEquals("testdb", instance.getParameters().get(POSTGRES_DB));
+        assertEquals("golden", instance.getParameters().get(POSTGRES_TEMPLATE));
+    }
+
+    @Test
+    public void plansWithoutTemplateUseThePool() {
+        ServiceInstance instance = instance("shared");
+
+        assertEquals(LastOperation.SUCCEEDED, broker.createInstance(instance).getState());
+        verify(pool).claim(any(PostgresHost.class), eq("testdb"));
+        verify(client).createDatabase("testdb", null);
+        assertNull(instance.getParameters().get(POSTGRES_TEMPLATE));
+    }
+
+    @Test
+    public void requestedTemplateMustBeMarkedAsTemplate() {
+        ServiceInstance instance = instance("shared");
+        instance.getParameters().put(POSTGRES_TEMPLATE, "otherTenantsDb");
+
+        LastOperation created = broker.createInstance(instance);
+        assertEquals(LastOperation.FAILED, created.getState());
+        verify(client, never()).createDatabase(anyString(), anyString());
+
+        when(client.isTemplate("seedv2")).thenReturn(true);
+        instance.getParameters().put(POSTGRES_TEMPLATE, "seedv2");
+        assertEquals(LastOperation.SUCCEEDED, broker.createInstance(instance).getState());
+        verify(client).createDatabase("testdb", "seedv2");
+    }
+
+    private ServiceInstance instance(String planId) {
+        ServiceInstance instance = new ServiceInstance(new CreateServiceInstanceRequest());
+        instance.setId("instance1");
+        instance.setServiceId("postgres");
+        instance.setPlanId(planId);
+        return instance;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.ecosystem.servicebroker;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static io.pivotal.ecosystem.servicebroker.PostgresClient.*;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class PostgresConfigTest {
+
+    /**
+     * A postgres server for {@link #createsDatabasesWhileThePoolIsWarm()}, the test is skipped if there is none.
+     */
+    private static final String TEST_HOST = System.getProperty("POSTGRES_TEST_HOST", "localhost:5432");
+
+    @Test(expected = IllegalStateException.class)
+    public void template1IsRefused() {
+        new PostgresConfig().datasource(env("template1"), POSTGRES_URI_SCHEME + "://" + TEST_HOST, new ConnectionPoolMetrics());
+    }
+
+    @Test
+    public void createsDatabasesWhileThePoolIsWarm() throws Exception {
+        assumeTrue(reachable(TEST_HOST));
+        MockEnvironment env = env(null);
+        String url = POSTGRES_URI_SCHEME + "://" + TEST_HOST;
+        HikariDataSource pool = (HikariDataSource) new PostgresConfig().datasource(env, url, new ConnectionPoolMetrics());
+        ExecutorService provisioning = Executors.newFixedThreadPool(3);
+        List<String> created = new ArrayList<>();
+        PostgresClient client = new PostgresClient(new JdbcTemplate(pool), JdbcTemplate::new, url, env);
+        try {
+            // the pool's idle connections, as postgres sees them
+            JdbcTemplate jdbc = new JdbcTemplate(pool);
+            String sessions = "SELECT count(*) FROM pg_stat_activity WHERE datname = current_database() AND pid <> pg_backend_pid()";
+            long deadline = System.currentTimeMillis() + 10000;
+            while (jdbc.queryForObject(sessions, Integer.class) < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertTrue(jdbc.queryForObject(sessions, Integer.class) >= 1);
+
+            List<Future<?>> creates = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                String db = "warmpool" + System.nanoTime();
+                created.add(db);
+                creates.add(provisioning.submit(() -> client.createDatabase(db)));
+            }
+            for (Future<?> create : creates) {
+                create.get();
+            }
+            for (String db : created) {
+                assertTrue(client.checkDatabaseExists(db));
+            }
+        } finally {
+            provisioning.shutdown();
+            created.forEach(client::deleteDatabase);
+            pool.close();
+        }
+    }
+
+    private static MockEnvironment env(String db) {
+        MockEnvironment env = new MockEnvironment()
+                .withProperty(POSTGRES_USER, System.getProperty("POSTGRES_TEST_USER", "postgres"))
+                .withProperty(POSTGRES_PASSWORD, System.getProperty("POSTGRES_TEST_PASSWORD", ""));
+        return db == null ? env : env.withProperty(POSTGRES_DB, db);
+    }
+
+    private static boolean reachable(String host) {
+        String[] hostAndPort = host.split(":");
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(hostAndPort[0], Integer.parseInt(hostAndPort[1])), 500);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.pivotal.ecosystem.servicebroker;
+
+import io.pivotal.ecosystem.servicebroker.model.ServiceBinding;
+import io.pivotal.ecosystem.servicebroker.service.ServiceBindingRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static io.pivotal.ecosystem.servicebroker.PostgresClient.POSTGRES_USER;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class RoleReconcilerTest {
+
+    private PostgresClient client;
+
+    private ServiceBindingRepository bindings;
+
+    private RoleReconciler reconciler;
+
+    @Before
+    public void setUp() {
+        client = mock(PostgresClient.class);
+        bindings = mock(ServiceBindingRepository.class);
+        PostgresHosts hosts = new PostgresHosts(Collections.singletonList(new PostgresHost("localhost:5432", client)), null, Collections.emptyList());
+        reconciler = new RoleReconciler(hosts, bindings, 0, 2, 10);
+    }
+
+    @After
+    public void tearDown() {
+        reconciler.destroy();
+    }
+
+    @Test
+    public void onlyUnboundUsersAreDroppedInBatches() {
+        when(bindings.findAll()).thenReturn(Arrays.asList(binding("u1", false), binding("u2", true)));
+        Map<String, String> users = new HashMap<>();
+        users.put("u1", "db1");
+        users.put("u2", "db1");
+        users.put("u3", "db1");
+        users.put("u4", "db1");
+        users.put("u5", null);
+        when(client.findBrokerUsers(anyLong())).thenReturn(users);
+
+        reconciler.reconcile();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> dropped = ArgumentCaptor.forClass((Class<Collection<String>>) (Class<?>) Collection.class);
+        verify(client, times(2)).dropUsers(eq("db1"), dropped.capture());
+        verify(client).dropUsers(null, Collections.singletonList("u5"));
+        Set<String> db1Users = new HashSet<>();
+        dropped.getAllValues().forEach(db1Users::addAll);
+        assertEquals(new HashSet<>(Arrays.asList("u2", "u3", "u4")), db1Users);
+        assertEquals(4L, metric("broker.roles.dropped"));
+    }
+
+    @Test
+    public void failedBatchesAreCountedAndSkipped() {
+        when(bindings.findAll()).thenReturn(Collections.emptyList());
+        Map<String, String> users = new HashMap<>();
+        users.put("u1", "db1");
+        users.put("u2", "db2");
+        when(client.findBrokerUsers(anyLong())).thenReturn(users);
+        doThrow(new IllegalStateException("role u1 cannot be dropped")).when(client).dropUsers("db1", Collections.singletonList("u1"));
+
+        reconciler.reconcile();
+
+        verify(client).dropUsers("db2", Collections.singletonList("u2"));
+        assertEquals(1L, metric("broker.roles.dropped"));
+        assertEquals(1L, metric("broker.roles.failed"));
+    }
+
+    private ServiceBinding binding(String user, boolean deleted) {
+        ServiceBinding binding = new ServiceBinding(new CreateServiceInstanceBindingRequest());
+        binding.getParameters().put(POSTGRES_USER, user);
+        binding.setDeleted(deleted);
+        return binding;
+    }
+
+    private Number metric(String name) {
+        for (Metric<?> metric : reconciler.metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue();
+            }
+        }
+        return null;
+    }
+}
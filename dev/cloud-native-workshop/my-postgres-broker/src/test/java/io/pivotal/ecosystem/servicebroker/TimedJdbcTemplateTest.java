@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2017-Present Pivotal Software, Inc. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the under the Apache License, Version 2.0 (the "License”);
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.ecosystem.servicebroker;
+
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class TimedJdbcTemplateTest {
+
+    @Test
+    public void statementsAreNamedByKindOnly() {
+        assertEquals("create-database", TimedJdbcTemplate.kind("CREATE DATABASE tenant1 TEMPLATE golden"));
+        assertEquals("drop-role", TimedJdbcTemplate.kind("DROP ROLE IF EXISTS u1, u2"));
+        assertEquals("comment-role", TimedJdbcTemplate.kind("COMMENT ON ROLE u1 IS 'my-postgres-broker'"));
+        assertEquals("grant", TimedJdbcTemplate.kind("GRANT ALL PRIVILEGES ON DATABASE tenant1 to u1"));
+        assertEquals("select-pg_stat_activity", TimedJdbcTemplate.kind("SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE datname = ?"));
+        assertEquals("batch", TimedJdbcTemplate.kind(null));
+    }
+
+    @Test
+    public void statementsAreTimedByOutcome() throws SQLException {
+        Statement statement = mock(Statement.class);
+        when(statement.execute("DROP DATABASE IF EXISTS gone")).thenThrow(new SQLException("database is in use"));
+        Connection connection = mock(Connection.class);
+        when(connection.createStatement()).thenReturn(statement);
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        OperationMetrics metrics = new OperationMetrics();
+        TimedJdbcTemplate jdbc = new TimedJdbcTemplate(dataSource, metrics);
+
+        jdbc.execute("CREATE DATABASE tenant1");
+        try {
+            jdbc.execute("DROP DATABASE IF EXISTS gone");
+            fail("expected the drop to fail");
+        } catch (RuntimeException e) {
+            // timed as an error
+        }
+
+        assertEquals(1L, value(metrics, "broker.statements.create-database.success.count"));
+        assertEquals(1L, value(metrics, "broker.statements.drop-database.error.count"));
+    }
+
+    private Object value(OperationMetrics metrics, String name) {
+        for (Metric<?> metric : metrics.metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue();
+            }
+        }
+        return null;
+    }
+}